@@ -0,0 +1,131 @@
+package com.aristel.bench;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Entry point of benchmarks.jar. Runs the selected benchmarks (JMH command-line options
+// apply, e.g. "RoomList" or -p rooms=1000) with the GC profiler on, so every result comes
+// with its allocation rate per operation, and writes them as CSV. If a baseline exists the
+// two are compared side by side; -Dbench.record=true makes this run the new baseline.
+public final class Benchmarks {
+    private static final String BASELINE = System.getProperty("bench.baseline", "benchmarks/baseline.csv");
+    private static final String RESULTS = System.getProperty("bench.results", "benchmarks/target/results.csv");
+    private static final boolean RECORD = Boolean.getBoolean("bench.record");
+
+    private Benchmarks() {}
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList()) {
+            Main.main(args);
+            return;
+        }
+        Path results = Paths.get(RESULTS);
+        if (results.getParent() != null) Files.createDirectories(results.getParent());
+
+        Options options = new OptionsBuilder()
+                .parent(cmd)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.CSV)
+                .result(results.toString())
+                .build();
+        new Runner(options).run();
+
+        Path baseline = Paths.get(BASELINE);
+        if (RECORD) {
+            if (baseline.getParent() != null) Files.createDirectories(baseline.getParent());
+            Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Recorded " + baseline + " as the new baseline.");
+        } else if (Files.exists(baseline)) {
+            compare(read(baseline), read(results));
+        } else {
+            System.out.println("No baseline at " + baseline + "; rerun with -Dbench.record=true to create one.");
+        }
+    }
+
+    // Benchmark name plus parameter values -> "score unit".
+    private static Map<String, String[]> read(Path csv) throws IOException {
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        Map<String, String[]> rows = new LinkedHashMap<>();
+        if (lines.isEmpty()) return rows;
+
+        List<String> header = split(lines.get(0));
+        int score = header.indexOf("Score");
+        int unit = header.indexOf("Unit");
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> cells = split(line);
+            if (cells.size() < header.size()) continue;
+            StringBuilder key = new StringBuilder(cells.get(0).replace("com.aristel.server.", ""));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && !cells.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(cells.get(i));
+                }
+            }
+            rows.put(key.toString(), new String[] { cells.get(score), cells.get(unit) });
+        }
+        return rows;
+    }
+
+    private static List<String> split(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    private static void compare(Map<String, String[]> baseline, Map<String, String[]> current) {
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-72s %14s %14s %9s  %s", "benchmark", "baseline", "current", "change", "unit"));
+        for (Map.Entry<String, String[]> e : current.entrySet()) {
+            String[] now = e.getValue();
+            String[] before = baseline.get(e.getKey());
+            double value = parse(now[0]);
+            if (before == null) {
+                System.out.println(String.format(Locale.ROOT, "%-72s %14s %14.3f %9s  %s", e.getKey(), "-", value, "new", now[1]));
+                continue;
+            }
+            double old = parse(before[0]);
+            String change = (old == 0) ? "-" : String.format(Locale.ROOT, "%+.1f%%", (value - old) * 100 / old);
+            System.out.println(String.format(Locale.ROOT, "%-72s %14.3f %14.3f %9s  %s", e.getKey(), old, value, change, now[1]));
+        }
+    }
+
+    private static double parse(String number) {
+        try {
+            return Double.parseDouble(number.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
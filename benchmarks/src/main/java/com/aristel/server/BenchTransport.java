@@ -0,0 +1,36 @@
+package com.aristel.server;
+
+// Stand-in for a client connection: frames go through a real OutboundQueue, and drain()
+// does the writer thread's work minus the socket, encoding every queued frame once.
+final class BenchTransport implements Transport {
+    private final OutboundQueue queue = new OutboundQueue(ServerConfig.OUTBOUND_QUEUE_SIZE, SlowConsumerPolicy.COALESCE);
+    private boolean binary;
+
+    BenchTransport(boolean binary) {
+        this.binary = binary;
+    }
+
+    @Override
+    public void send(Frame frame) {
+        queue.offer(frame);
+    }
+
+    @Override
+    public void upgrade(Frame handshake) {
+        queue.offer(handshake);
+        binary = true;
+    }
+
+    @Override
+    public void close() {
+        queue.close();
+    }
+
+    // Returns the number of bytes the writer would have put on the wire.
+    int drain() {
+        int bytes = 0;
+        Frame frame;
+        while ((frame = queue.poll()) != null) bytes += frame.bytes(binary).length;
+        return bytes;
+    }
+}
@@ -0,0 +1,39 @@
+package com.aristel.server;
+
+import com.aristel.protocol.CardCatalogue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Dealing a board, as GameRoom.startGame does for every game.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    @Param({ "20", "400", "4096" })
+    public int totalCards;
+
+    @Param({ "2", "4" })
+    public int matchSize;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Benchmark
+    public Board generate() {
+        return new Board(totalCards, matchSize, CardCatalogue.SIZE, random);
+    }
+}
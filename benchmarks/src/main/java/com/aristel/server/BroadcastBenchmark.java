@@ -0,0 +1,71 @@
+package com.aristel.server;
+
+import com.aristel.protocol.Opcode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Fanning one room event out to `recipients` connections: the loop GameRoom.broadcast runs
+// over its players and SpectatorRelay over its watchers, then each connection's writer
+// encoding the shared frame. `textShare` is the percentage of recipients on the text
+// protocol; the first text and the first binary recipient pay for the encoding.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+    @Param({ "4", "64", "500" })
+    public int recipients;
+
+    @Param({ "0", "50", "100" })
+    public int textShare;
+
+    private ClientHandler[] handlers;
+    private BenchTransport[] transports;
+    private int card;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        handlers = new ClientHandler[recipients];
+        transports = new BenchTransport[recipients];
+        for (int i = 0; i < recipients; i++) {
+            transports[i] = new BenchTransport(i * 100 >= textShare * recipients);
+            handlers[i] = new ClientHandler(transports[i]);
+        }
+    }
+
+    @Benchmark
+    public int flip() {
+        card = (card + 1) & 1023;
+        Frame frame = Frame.event(Opcode.FLIP, card, card >> 1);
+        for (ClientHandler h : handlers) h.send(frame);
+        return drain();
+    }
+
+    @Benchmark
+    public int message() {
+        Frame frame = Frame.of("MSG:Player 3 found a match and KEEPS the turn!");
+        for (ClientHandler h : handlers) h.send(frame);
+        return drain();
+    }
+
+    private int drain() {
+        int bytes = 0;
+        for (BenchTransport t : transports) bytes += t.drain();
+        return bytes;
+    }
+}
@@ -0,0 +1,82 @@
+package com.aristel.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Turning raw lines into commands and fields, as ClientHandler.handleLine does before it
+// dispatches, plus handleLine itself for a CLICK outside any room (parse and dispatch only)
+// and a GET_ROOMS answered from the cached list.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParserBenchmark {
+    private final CommandParser parser = new CommandParser();
+    private final byte[] click = bytes("CLICK:173");
+    private final byte[] create = bytes("CREATE:Night\\:Owls:hunter2:400:4");
+    private final byte[] search = bytes("SEARCH_ROOMS:owl:CONTAINS:WAITING:PUBLIC:0:20");
+    private final byte[] getRooms = bytes("GET_ROOMS");
+    private BenchTransport transport;
+    private ClientHandler handler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        transport = new BenchTransport(false);
+        handler = new ClientHandler(transport);
+        new GameRoom("lobby", "").open();
+    }
+
+    private static byte[] bytes(String line) {
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int parseClick() {
+        parser.reset(click, 0, click.length);
+        parser.command();
+        return parser.nextInt(-1);
+    }
+
+    @Benchmark
+    public void parseCreate(Blackhole bh) {
+        parser.reset(create, 0, create.length);
+        bh.consume(parser.command());
+        bh.consume(parser.nextString());
+        bh.consume(parser.nextString());
+        bh.consume(parser.nextInt(0));
+        bh.consume(parser.nextInt(2));
+    }
+
+    @Benchmark
+    public RoomCatalogue.Query parseSearch() {
+        parser.reset(search, 0, search.length);
+        parser.command();
+        return RoomCatalogue.Query.parse(parser);
+    }
+
+    @Benchmark
+    public void handleClick() {
+        handler.handleLine(click, 0, click.length);
+    }
+
+    @Benchmark
+    public int handleGetRooms() {
+        handler.handleLine(getRooms, 0, getRooms.length);
+        return transport.drain();
+    }
+}
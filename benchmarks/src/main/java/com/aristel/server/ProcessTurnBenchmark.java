@@ -0,0 +1,101 @@
+package com.aristel.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// One complete turn through GameRoom.processTurn with two players on mock connections,
+// including the broadcasts and their encoding. The room is rebuilt the way crash recovery
+// does it, from a RoomImage whose layout is known: cards 2k and 2k+1 show image k.
+//
+// match: the player on turn flips a pair and keeps the turn; a cleared board is replaced,
+// which costs one room rebuild every boardCards / 2 operations.
+// mismatch: two different images, then the hide the mismatch timer would have run. The
+// timer itself is cancelled; the delay is set far beyond a measurement iteration.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dmemory.server.mismatchDelayMs=3600000")
+public class ProcessTurnBenchmark {
+    @Param({ "20", "400", "4096" })
+    public int boardCards;
+
+    @Param({ "true", "false" })
+    public boolean binary;
+
+    private GameRoom room;
+    private final ClientHandler[] players = new ClientHandler[2];
+    private final BenchTransport[] transports = new BenchTransport[2];
+    private int turn;
+    private int nextPair;
+    private final int[] shown = new int[2];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        newRoom();
+    }
+
+    private void newRoom() {
+        RoomImage image = new RoomImage();
+        image.roomId = "bench";
+        image.password = "";
+        image.boardCards = boardCards;
+        image.matchSize = 2;
+        image.addSeat(0, "token-0");
+        image.addSeat(1, "token-1");
+        image.running = true;
+        image.cards = new short[boardCards];
+        for (int i = 0; i < boardCards; i++) image.cards[i] = (short) (i / 2);
+        image.matched = new long[(boardCards + 63) >>> 6];
+
+        room = GameRoom.restore(image);
+        for (int i = 0; i < 2; i++) {
+            transports[i] = new BenchTransport(binary);
+            players[i] = new ClientHandler(transports[i]);
+            room.resumePlayer(players[i], "token-" + i, 0);
+        }
+        drain();
+        turn = 0;
+        nextPair = 0;
+    }
+
+    @Benchmark
+    public int match() {
+        if (nextPair * 2 >= boardCards) newRoom();
+        int first = nextPair++ * 2;
+        int id = players[turn].playerID;
+        room.processTurn(id, first);
+        room.processTurn(id, first + 1);
+        return drain();
+    }
+
+    @Benchmark
+    public int mismatch() {
+        int id = players[turn].playerID;
+        shown[0] = 0;
+        shown[1] = 2;
+        room.processTurn(id, shown[0]);
+        room.processTurn(id, shown[1]);
+        room.finishMismatch(shown);
+        room.cancelTimers();
+        turn ^= 1;
+        return drain();
+    }
+
+    private int drain() {
+        return transports[0].drain() + transports[1].drain();
+    }
+}
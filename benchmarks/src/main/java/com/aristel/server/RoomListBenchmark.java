@@ -0,0 +1,56 @@
+package com.aristel.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// GET_ROOMS against a lobby of `rooms` open rooms, a quarter of them private. GameServer's
+// room table is static, so every parameter value runs in its own fork.
+//
+// cached: nothing changed since the last GET_ROOMS, the common case under load.
+// rebuilt: one room changed its listing first, so the list is serialized again.
+// Both include encoding the reply as a text client receives it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomListBenchmark {
+    @Param({ "10", "1000", "100000" })
+    public int rooms;
+
+    private GameRoom changing;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < rooms; i++) {
+            GameRoom room = new GameRoom("room-" + i, (i % 4 == 0) ? "secret" : "");
+            room.open();
+            if (i == 0) changing = room;
+        }
+        GameServer.getRoomList();
+    }
+
+    @Benchmark
+    public byte[] cached() {
+        return GameServer.getRoomList().bytes(false);
+    }
+
+    @Benchmark
+    public byte[] rebuilt() {
+        changing.publishListing();
+        return GameServer.getRoomList().bytes(false);
+    }
+}
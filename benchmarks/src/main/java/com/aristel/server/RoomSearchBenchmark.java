@@ -0,0 +1,78 @@
+package com.aristel.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// One SEARCH_ROOMS page against a RoomCatalogue of `rooms` listings named room-0, room-1, ...
+// Every room has one to four players and a quarter of them are private.
+//
+// prefix: PREFIX "room-1", answered from the sorted range, the best case.
+// trigram: CONTAINS "m-12", walked through its rarest trigram.
+// shortText: CONTAINS "7", too short for trigrams, so the rooms are walked in name order.
+// unindexed: private rooms with four free seats, of which there are none: visibility and
+// free seats are not indexed, so this walks until the searchScanLimit budget runs out.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomSearchBenchmark {
+    @Param({ "1000", "100000" })
+    public int rooms;
+
+    private final RoomCatalogue catalogue = new RoomCatalogue();
+    private RoomCatalogue.Query prefix;
+    private RoomCatalogue.Query trigram;
+    private RoomCatalogue.Query shortText;
+    private RoomCatalogue.Query unindexed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < rooms; i++) {
+            catalogue.put(new RoomListing("room-" + i, "Player", 1 + i % 4, "WAITING", i % 4 == 0));
+        }
+        prefix = new RoomCatalogue.Query();
+        prefix.text = "room-1";
+        prefix.prefix = true;
+        trigram = new RoomCatalogue.Query();
+        trigram.text = "m-12";
+        shortText = new RoomCatalogue.Query();
+        shortText.text = "7";
+        unindexed = new RoomCatalogue.Query();
+        unindexed.isPrivate = true;
+        unindexed.minFreeSeats = GameRoom.MAX_PLAYERS;
+    }
+
+    @Benchmark
+    public RoomCatalogue.Page prefix() {
+        return catalogue.search(prefix);
+    }
+
+    @Benchmark
+    public RoomCatalogue.Page trigram() {
+        return catalogue.search(trigram);
+    }
+
+    @Benchmark
+    public RoomCatalogue.Page shortText() {
+        return catalogue.search(shortText);
+    }
+
+    @Benchmark
+    public RoomCatalogue.Page unindexed() {
+        return catalogue.search(unindexed);
+    }
+}
@@ -0,0 +1,24 @@
+#!/bin/sh
+# Starts a local cluster: SHARDS game server processes on ports 12346.. and a Router on
+# 12345 in front of them. Clients connect to 12345 as usual. Ctrl+C stops everything.
+cd "$(dirname "$0")/.."
+
+SHARDS=${SHARDS:-3}
+BASE_PORT=${BASE_PORT:-12346}
+JAR=${JAR:-Server.jar}
+
+pids=""
+spec=""
+i=0
+while [ "$i" -lt "$SHARDS" ]; do
+    port=$((BASE_PORT + i))
+    java -Dmemory.server.shardName="s$i" -Dmemory.server.port="$port" $SHARD_OPTS \
+        -cp "$JAR" com.aristel.server.GameServer &
+    pids="$pids $!"
+    spec="${spec:+$spec,}s$i=localhost:$port"
+    i=$((i + 1))
+done
+
+trap 'kill $pids 2>/dev/null' INT TERM EXIT
+echo "Starting Router for $spec"
+java -Dmemory.router.shards="$spec" $ROUTER_OPTS -cp "$JAR" com.aristel.server.Router
@@ -8,6 +8,7 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 
+import com.aristel.log.Log;
 import com.aristel.network.ClientConnection;
 
 
@@ -38,14 +39,13 @@ public class App extends Application {
                 primaryStage.getScene().setRoot(newRoot);
             }
         } catch (IOException e) {
-            e.printStackTrace();
-            System.err.println("Could not load FXML: " + fxmlPath);
+            Log.error("Could not load FXML: " + fxmlPath, e);
         }
     }
 
     @Override
     public void stop() {
-        System.out.println("Application closing, disconnecting socket...");
+        Log.info("Application closing, disconnecting socket...");
         ClientConnection.getInstance().disconnect();
     }
 
@@ -0,0 +1,143 @@
+package com.aristel.controller;
+
+import com.aristel.protocol.CardCatalogue;
+import com.aristel.util.CardImages;
+
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Board view for games too large for one Button per card. A single Canvas the size of the
+// viewport paints only the rows in view, and each card is one short: the image id showing,
+// or -1 while face down. Memory stays flat however many cards the server deals.
+public class BoardCanvas extends Region {
+    private static final double GAP = 6;
+    private static final double MIN_CARD_WIDTH = 36;
+    private static final double MAX_CARD_WIDTH = 100;
+    private static final double ASPECT = 1.4;
+
+    private final Canvas canvas = new Canvas();
+    private final ScrollBar scrollBar = new ScrollBar();
+    private final short[] shown;
+    private final IntConsumer onClick;
+    private double cardWidth;
+    private double cardHeight;
+    private int columns = 1;
+
+    public BoardCanvas(int totalCards, IntConsumer onClick) {
+        this.shown = new short[totalCards];
+        this.onClick = onClick;
+        Arrays.fill(shown, (short) -1);
+
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.valueProperty().addListener((obs, old, value) -> paint());
+        getChildren().addAll(canvas, scrollBar);
+
+        canvas.setOnMouseClicked(e -> {
+            int index = indexAt(e.getX(), e.getY());
+            if (index >= 0) onClick.accept(index);
+        });
+        setOnScroll(e -> scrollBar.setValue(clamp(scrollBar.getValue() - e.getDeltaY(), 0, scrollBar.getMax())));
+    }
+
+    public void show(int index, int imageId) {
+        if (index < 0 || index >= shown.length) return;
+        shown[index] = (short) imageId;
+        paintCard(canvas.getGraphicsContext2D(), index);
+    }
+
+    public void hide(int index) {
+        if (index < 0 || index >= shown.length) return;
+        shown[index] = -1;
+        paintCard(canvas.getGraphicsContext2D(), index);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double barWidth = scrollBar.prefWidth(-1);
+        double width = Math.max(0, getWidth() - barWidth);
+        double height = getHeight();
+
+        // Largest card that fits everything on screen, within readable bounds.
+        double fit = Math.sqrt(width * height / Math.max(1, shown.length) / ASPECT) - GAP;
+        cardWidth = clamp(fit, MIN_CARD_WIDTH, MAX_CARD_WIDTH);
+        cardHeight = cardWidth * ASPECT;
+        columns = Math.max(1, (int) ((width + GAP) / (cardWidth + GAP)));
+
+        int rows = (shown.length + columns - 1) / columns;
+        double contentHeight = rows * (cardHeight + GAP);
+        scrollBar.setMax(Math.max(0, contentHeight - height));
+        scrollBar.setVisibleAmount(height);
+        scrollBar.setValue(clamp(scrollBar.getValue(), 0, scrollBar.getMax()));
+
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+        scrollBar.resizeRelocate(width, 0, barWidth, height);
+        paint();
+    }
+
+    private void paint() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+        int firstRow = (int) (scrollBar.getValue() / (cardHeight + GAP));
+        int lastRow = (int) ((scrollBar.getValue() + canvas.getHeight()) / (cardHeight + GAP));
+        int end = Math.min(shown.length, (lastRow + 1) * columns);
+        for (int i = firstRow * columns; i < end; i++) paintCard(gc, i);
+    }
+
+    private void paintCard(GraphicsContext gc, int index) {
+        double x = (index % columns) * (cardWidth + GAP);
+        double y = (index / columns) * (cardHeight + GAP) - scrollBar.getValue();
+        if (y + cardHeight < 0 || y > canvas.getHeight()) return;
+
+        CardImages images = CardImages.getInstance();
+        int imageId = shown[index];
+        gc.clearRect(x, y, cardWidth, cardHeight);
+        if (imageId < 0) {
+            if (images.back() != null) gc.drawImage(images.back(), x, y, cardWidth, cardHeight);
+            return;
+        }
+
+        gc.save();
+        gc.setEffect(images.tint(imageId));
+        if (images.face(imageId) != null) gc.drawImage(images.face(imageId), x, y, cardWidth, cardHeight);
+        gc.restore();
+
+        int mark = CardCatalogue.mark(imageId);
+        if (mark > 0) {
+            gc.setFill(Color.rgb(0, 0, 0, 0.6));
+            gc.fillRect(x, y + cardHeight - 18, cardWidth, 18);
+            gc.setFill(Color.web("#fbc531"));
+            gc.setFont(Font.font("System", FontWeight.BOLD, 12));
+            gc.setTextAlign(TextAlignment.CENTER);
+            gc.setTextBaseline(VPos.CENTER);
+            gc.fillText(Integer.toString(mark), x + cardWidth / 2, y + cardHeight - 9);
+        }
+    }
+
+    private int indexAt(double x, double y) {
+        int col = (int) (x / (cardWidth + GAP));
+        double rowY = y + scrollBar.getValue();
+        int row = (int) (rowY / (cardHeight + GAP));
+        if (col >= columns || x - col * (cardWidth + GAP) > cardWidth) return -1;
+        if (rowY - row * (cardHeight + GAP) > cardHeight) return -1;
+
+        int index = row * columns + col;
+        return (index < shown.length) ? index : -1;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(value, max));
+    }
+}
@@ -1,8 +1,13 @@
 package com.aristel.controller;
 
 import com.aristel.App;
+import com.aristel.log.Log;
 import com.aristel.network.ClientConnection;
 import com.aristel.network.IncomingMessageListener;
+import com.aristel.protocol.GameEvent;
+import com.aristel.protocol.GameSnapshot;
+import com.aristel.protocol.Opcode;
+import com.aristel.util.CardImages;
 import com.aristel.util.SoundManager;
 
 import javafx.animation.KeyFrame;
@@ -15,6 +20,7 @@ import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
@@ -25,6 +31,10 @@ import java.util.stream.Collectors;
 
 public class GameBoardController implements IncomingMessageListener {
 
+    // Boards up to this size get one Button per card; larger ones are drawn on a BoardCanvas.
+    private static final int MAX_BUTTON_CARDS = 40;
+
+    @FXML private BorderPane boardPane;
     @FXML private GridPane boardGrid;
     @FXML private Label turnLabel;
     @FXML private Label instructionLabel;
@@ -45,9 +55,12 @@ public class GameBoardController implements IncomingMessageListener {
     @FXML private Label returnTimerLabel;
 
     private List<Button> cardButtons = new ArrayList<>();
-    private Map<Integer, Image> imageCache = new HashMap<>();
-    private Image backCardImage;
+    private BoardCanvas boardCanvas;
+    private CardImages images;
     private int myPlayerId = -1;
+    private boolean spectating = false;
+    // Set by a SNAPSHOT resume: the next snapshot redraws the board without the countdown.
+    private boolean resuming = false;
     private int currentTurnId = -1; 
     private Map<Integer, Integer> playerScores = new HashMap<>();
     private boolean inputLocked = true; 
@@ -55,25 +68,15 @@ public class GameBoardController implements IncomingMessageListener {
 
     public void initialize() {
         this.myPlayerId = ClientConnection.getInstance().myPlayerId;
+        this.spectating = ClientConnection.getInstance().spectating;
         ClientConnection.getInstance().setMessageListener(this);
-        loadImages();
+        images = CardImages.getInstance();
         
-        ClientConnection.getInstance().sendMessage("GET_GAME_STATE");
+        ClientConnection.getInstance().sendMessage("GET_GAME_STATE:SNAPSHOT");
         disconnectedPlayers.clear();
         inputLocked = true; 
     }
 
-    private void loadImages() {
-        try {
-            backCardImage = new Image(getClass().getResourceAsStream("/com/aristel/assets/images/back.png"));
-            for (int i = 0; i < 20; i++) {
-                String path = "/com/aristel/assets/images/" + i + ".png";
-                Image img = new Image(getClass().getResourceAsStream(path));
-                imageCache.put(i, img);
-            }
-        } catch (Exception e) { e.printStackTrace(); }
-    }
-
     @Override
     public void onMessageReceived(String message) {
         String[] parts = message.split(":");
@@ -85,6 +88,31 @@ public class GameBoardController implements IncomingMessageListener {
                 Platform.runLater(() -> startSequence(totalCards));
                 break;
 
+            case "GAME_SNAPSHOT":
+                int[] fields = new int[parts.length - 1];
+                for (int i = 0; i < fields.length; i++) fields[i] = Integer.parseInt(parts[i + 1]);
+                GameSnapshot snapshot = GameSnapshot.decode(fields);
+                Platform.runLater(() -> applySnapshot(snapshot));
+                break;
+
+            case "PLAYER_RECONNECTED":
+                disconnectedPlayers.remove(Integer.parseInt(parts[1]));
+                Platform.runLater(this::renderScoreboard);
+                break;
+
+            case "RESUMED":
+                if (parts.length > 3 && parts[3].equals("SNAPSHOT")) {
+                    resuming = true;
+                    disconnectedPlayers.clear();
+                }
+                break;
+
+            case "ERROR":
+                if (parts.length > 1 && parts[1].equals("RESUME_FAILED")) {
+                    Platform.runLater(() -> App.loadView("views/LobbyView.fxml"));
+                }
+                break;
+
             case "PLAYER_DISCONNECTED":
                 int pid = Integer.parseInt(message.split(":")[1]);
                 disconnectedPlayers.add(pid);
@@ -103,9 +131,9 @@ public class GameBoardController implements IncomingMessageListener {
                 break;
 
             case "HIDE": 
-                int h1 = Integer.parseInt(parts[1]);
-                int h2 = Integer.parseInt(parts[2]);
-                Platform.runLater(() -> hideCards(h1, h2));
+                int[] hidden = new int[parts.length - 1];
+                for (int i = 0; i < hidden.length; i++) hidden[i] = Integer.parseInt(parts[i + 1]);
+                Platform.runLater(() -> hideCards(hidden));
                 break;
 
             case "TURN":
@@ -121,17 +149,107 @@ public class GameBoardController implements IncomingMessageListener {
                 break;
                 
             case "GAME_OVER":
-                Platform.runLater(this::showEndScreen);
+                if (spectating) {
+                    Platform.runLater(() -> instructionLabel.setText("Fate has been decided."));
+                } else {
+                    Platform.runLater(this::showEndScreen);
+                }
                 break;
             
             case "BACK_TO_ROOM":
-                Platform.runLater(() -> App.loadView("views/RoomView.fxml"));
+                if (!spectating) Platform.runLater(() -> App.loadView("views/RoomView.fxml"));
+                break;
+
+            case "SPECTATE_ENDED":
+                Platform.runLater(() -> {
+                    ClientConnection.getInstance().sendMessage("LEAVE");
+                    ClientConnection.getInstance().spectating = false;
+                    App.loadView("views/LobbyView.fxml");
+                });
+                break;
+        }
+    }
+
+    @Override
+    public void onGameEvent(GameEvent event) {
+        int[] f = event.fields;
+
+        switch (event.opcode) {
+            case Opcode.GAME_INIT:
+                Platform.runLater(() -> startSequence(f[0]));
+                break;
+
+            case Opcode.GAME_SNAPSHOT:
+                GameSnapshot snapshot = GameSnapshot.decode(f);
+                Platform.runLater(() -> applySnapshot(snapshot));
+                break;
+
+            case Opcode.SCORES:
+                for (int i = 0; i + 1 < f.length; i += 2) {
+                    playerScores.put(f[i], f[i + 1]);
+                }
+                Platform.runLater(this::renderScoreboard);
+                break;
+
+            case Opcode.FLIP:
+                Platform.runLater(() -> flipCard(f[0], f[1]));
+                break;
+
+            case Opcode.HIDE:
+                Platform.runLater(() -> hideCards(f));
+                break;
+
+            case Opcode.TURN:
+                this.currentTurnId = f[0];
+                Platform.runLater(() -> updateTurn(f[0]));
+                break;
+
+            case Opcode.MATCH:
+                Platform.runLater(() -> updateOneScore(f[0], f[1]));
+                break;
+
+            default:
+                onMessageReceived(event.toText());
                 break;
         }
     }
 
+    // Redraws the whole game from one GAME_SNAPSHOT; the first one also runs the start sequence.
+    private void applySnapshot(GameSnapshot s) {
+        playerScores.clear();
+        disconnectedPlayers.clear();
+        for (int i = 0; i < s.playerIds.length; i++) {
+            playerScores.put(s.playerIds[i], s.scores[i]);
+            if (!s.connected[i]) disconnectedPlayers.add(s.playerIds[i]);
+        }
+        currentTurnId = s.turnPlayerId;
+
+        if (cardButtons.isEmpty() && boardCanvas == null) {
+            startSequence(s.totalCards);
+        } else {
+            setupBoard(s.totalCards);
+        }
+        if (resuming) {
+            inputLocked = false;
+            resuming = false;
+        }
+
+        for (int i = 0; i < s.shownIndices.length; i++) {
+            showCard(s.shownIndices[i], s.shownImages[i]);
+        }
+        renderScoreboard();
+        updateTurn(s.turnPlayerId);
+    }
+
     private void startSequence(int totalCards) {
         setupBoard(totalCards);
+        if (spectating || resuming) {
+            // Watchers and resumed players join mid-game: no countdown.
+            renderScoreboard();
+            if (resuming) inputLocked = false;
+            resuming = false;
+            return;
+        }
         
         SoundManager.getInstance().play("start");
 
@@ -179,18 +297,29 @@ public class GameBoardController implements IncomingMessageListener {
     private void setupBoard(int totalCards) {
         boardGrid.getChildren().clear();
         cardButtons.clear();
+        boardCanvas = null;
+
+        if (totalCards > MAX_BUTTON_CARDS) {
+            boardCanvas = new BoardCanvas(totalCards, index -> {
+                if (!inputLocked) ClientConnection.getInstance().sendClick(index);
+            });
+            boardPane.setCenter(boardCanvas);
+            return;
+        }
+        boardPane.setCenter(boardGrid);
+
         int rows = 5;
-        int columns = totalCards / rows; 
+        int columns = (totalCards + rows - 1) / rows; 
         
         for (int i = 0; i < totalCards; i++) {
             Button btn = new Button();        
             btn.setPrefSize(100, 140);  
             btn.getStyleClass().add("card-button"); 
-            setButtonImage(btn, backCardImage);
+            setButtonImage(btn, images.back());
 
             int index = i;
             btn.setOnAction(e -> {
-                if (!inputLocked) ClientConnection.getInstance().sendMessage("CLICK:" + index);
+                if (!inputLocked) ClientConnection.getInstance().sendClick(index);
             });
 
             cardButtons.add(btn);
@@ -208,18 +337,31 @@ public class GameBoardController implements IncomingMessageListener {
     }
 
     private void flipCard(int index, int imageId) {
-        if (index >= 0 && index < cardButtons.size()) {
-            Button btn = cardButtons.get(index);
-            setButtonImage(btn, imageCache.get(imageId));
-            SoundManager.getInstance().play("flip");
+        if (showCard(index, imageId)) SoundManager.getInstance().play("flip");
+    }
+
+    private boolean showCard(int index, int imageId) {
+        if (boardCanvas != null) {
+            boardCanvas.show(index, imageId);
+            return true;
         }
+        if (index < 0 || index >= cardButtons.size()) return false;
+        Button btn = cardButtons.get(index);
+        setButtonImage(btn, images.face(imageId));
+        btn.getGraphic().setEffect(images.tint(imageId));
+        return true;
     }
 
-    private void hideCards(int idx1, int idx2) {
+    private void hideCards(int[] indices) {
         instructionLabel.setText("Fate denies you.");
         SoundManager.getInstance().play("fail");
-        if (idx1 >= 0) setButtonImage(cardButtons.get(idx1), backCardImage);
-        if (idx2 >= 0) setButtonImage(cardButtons.get(idx2), backCardImage);
+        for (int idx : indices) {
+            if (boardCanvas != null) {
+                boardCanvas.hide(idx);
+            } else if (idx >= 0 && idx < cardButtons.size()) {
+                setButtonImage(cardButtons.get(idx), images.back());
+            }
+        }
     }
 
     private void updateTurn(int playerId) {
@@ -380,7 +522,7 @@ public class GameBoardController implements IncomingMessageListener {
             Image img = new Image(getClass().getResourceAsStream("/com/aristel/assets/images/" + imgName));
             resultImage.setImage(img);
         } catch (Exception e) {
-            System.err.println("Missing Image: " + imgName);
+            Log.warn("Missing Image: " + imgName);
         }
     }
 }
\ No newline at end of file
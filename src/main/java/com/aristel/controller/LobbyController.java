@@ -13,6 +13,12 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class LobbyController implements IncomingMessageListener {
 
     @FXML private FlowPane roomContainer;
@@ -25,6 +31,8 @@ public class LobbyController implements IncomingMessageListener {
     @FXML private RadioButton privateRadio;
     @FXML private VBox passwordSection;
     @FXML private PasswordField newRoomPassInput;
+    @FXML private TextField boardSizeInput;
+    @FXML private ChoiceBox<String> matchSizeChoice;
 
     @FXML private AnchorPane errorPopup;
     @FXML private Label errorLabel;
@@ -35,10 +43,18 @@ public class LobbyController implements IncomingMessageListener {
 
     @FXML private AnchorPane validationPopup; 
 
+    @FXML private ChoiceBox<String> quickPlayersChoice;
+    @FXML private Button quickMatchButton;
+
     private ToggleGroup typeGroup;
-    private String lastRoomData = ""; 
+    private static final int SEARCH_PAGE_SIZE = 50;
+
+    private Map<String, String> roomEntries = new LinkedHashMap<>();
+    private long lobbyVersion = -1;
     private boolean isSearchActive = false;
     private String pendingJoinRoomName = "";
+    private boolean pendingSpectate = false;
+    private boolean inQuickMatch = false;
 
     public void initialize() {
         boolean connected = ClientConnection.getInstance().connect("localhost", 12345);
@@ -46,15 +62,26 @@ public class LobbyController implements IncomingMessageListener {
             statusLabel.setText("Connected. Fetching rooms...");
             ClientConnection.getInstance().setMessageListener(this);
             isSearchActive = false;
-            ClientConnection.getInstance().sendMessage("GET_ROOMS");
+            ClientConnection.getInstance().sendMessage("SUBSCRIBE_LOBBY");
         } else {
-            statusLabel.setText("Failed to connect to server!");
+            String refusal = ClientConnection.getInstance().getRefusal();
+            statusLabel.setText(refusal != null
+                    ? "Server refused the connection: " + refusal.substring("ERROR:".length())
+                    : "Failed to connect to server!");
         }
 
         typeGroup = new ToggleGroup();
         publicRadio.setToggleGroup(typeGroup);
         privateRadio.setToggleGroup(typeGroup);
         publicRadio.setSelected(true);
+
+        // Index + 2 is the number of identical cards that make a set.
+        matchSizeChoice.getItems().setAll("PAIRS", "TRIPLES", "QUADS");
+        matchSizeChoice.getSelectionModel().selectFirst();
+
+        // Index + 2 is the number of players the quick match waits for.
+        quickPlayersChoice.getItems().setAll("2 SOULS", "3 SOULS", "4 SOULS");
+        quickPlayersChoice.getSelectionModel().selectFirst();
     }
 
     @FXML private void hideCreatePopup() { 
@@ -99,54 +126,100 @@ public class LobbyController implements IncomingMessageListener {
             }
         }
         
+        int boardCards = 0;
+        try {
+            boardCards = Integer.parseInt(boardSizeInput.getText().trim());
+        } catch (NumberFormatException e) {
+            // Blank or not a number: classic board of ten cards per player.
+        }
+        int matchSize = matchSizeChoice.getSelectionModel().getSelectedIndex() + 2;
+        
         if (!room.isEmpty()) {
-            ClientConnection.getInstance().sendMessage("CREATE:" + room + ":" + pass);
+            ClientConnection.getInstance().sendMessage("CREATE:" + ClientConnection.escape(room) + ":" + ClientConnection.escape(pass)
+                    + ":" + boardCards + ":" + matchSize);
             hideCreatePopup();
             newRoomNameInput.clear();
             newRoomPassInput.clear();
+            boardSizeInput.clear();
         }
     }
 
     private void handleJoinClick(String roomName, String status, int currentPlayers, boolean isPrivate) {
         if (currentPlayers >= 4) {
             showError("ROOM FULL", "There are too many souls in that room already.");
-            ClientConnection.getInstance().sendMessage("GET_ROOMS");
             return;
         }
         if (status.equals("IN GAME")) {
             showError("FATE SEALED", "They done vainly wagered their fates in that room.");
-            ClientConnection.getInstance().sendMessage("GET_ROOMS");
             return;
         }
 
         if (isPrivate) {
             this.pendingJoinRoomName = roomName;
+            this.pendingSpectate = false;
             joinPassInput.clear();
             passwordPopup.setVisible(true);
             passwordPopup.toFront(); 
         } else {
-            ClientConnection.getInstance().sendMessage("JOIN:" + roomName);
+            ClientConnection.getInstance().sendMessage("JOIN:" + ClientConnection.escape(roomName));
+        }
+    }
+
+    private void handleWatchClick(String roomName, boolean isPrivate) {
+        SoundManager.getInstance().play("click");
+        if (isPrivate) {
+            this.pendingJoinRoomName = roomName;
+            this.pendingSpectate = true;
+            joinPassInput.clear();
+            passwordPopup.setVisible(true);
+            passwordPopup.toFront();
+        } else {
+            ClientConnection.getInstance().sendMessage("SPECTATE:" + ClientConnection.escape(roomName));
         }
     }
 
     @FXML private void handleConfirmJoinPrivate() {
         String pass = joinPassInput.getText();
         if (!pendingJoinRoomName.isEmpty()) {
-            ClientConnection.getInstance().sendMessage("JOIN:" + pendingJoinRoomName + ":" + pass);
+            String command = pendingSpectate ? "SPECTATE:" : "JOIN:";
+            ClientConnection.getInstance().sendMessage(command + ClientConnection.escape(pendingJoinRoomName) + ":" + ClientConnection.escape(pass));
             hidePasswordPopup();
         }
     }
 
+    // The server seats the queued players in a new room and starts the game; the button
+    // doubles as the cancel while waiting.
+    @FXML private void handleQuickMatch() {
+        SoundManager.getInstance().play("click");
+        if (inQuickMatch) {
+            ClientConnection.getInstance().sendMessage("CANCEL_MATCH");
+        } else {
+            int players = quickPlayersChoice.getSelectionModel().getSelectedIndex() + 2;
+            ClientConnection.getInstance().sendMessage("QUICK_MATCH:" + players);
+        }
+    }
+
+    private void setQuickMatch(boolean waiting) {
+        inQuickMatch = waiting;
+        quickMatchButton.setText(waiting ? "CANCEL" : "QUICK FATE");
+        quickPlayersChoice.setDisable(waiting);
+    }
+
     @FXML private void handleSearch() {
         SoundManager.getInstance().play("click");
-        isSearchActive = true;
-        ClientConnection.getInstance().sendMessage("GET_ROOMS");
+        String text = searchInput.getText().trim();
+        isSearchActive = !text.isEmpty();
+        if (isSearchActive) {
+            ClientConnection.getInstance().sendMessage("SEARCH_ROOMS:" + ClientConnection.escape(text) + ":CONTAINS:ANY:ANY:0:" + SEARCH_PAGE_SIZE);
+        } else {
+            renderRooms(roomEntries.values(), "");
+        }
     }
     @FXML private void handleRefresh() {
         SoundManager.getInstance().play("click");
         isSearchActive = false;
         searchInput.clear();
-        ClientConnection.getInstance().sendMessage("GET_ROOMS");
+        ClientConnection.getInstance().sendMessage("SUBSCRIBE_LOBBY");
     }
 
     private void showError(String title, String body) {
@@ -161,52 +234,148 @@ public class LobbyController implements IncomingMessageListener {
     public void onMessageReceived(String rawMessage) {
         String message = rawMessage.trim();
 
-        if (message.startsWith("ROOM_LIST:")) {
-            lastRoomData = message.substring(10); 
-            String filterText = isSearchActive ? searchInput.getText() : "";
-            Platform.runLater(() -> renderRooms(lastRoomData, filterText));
+        if (message.startsWith("LOBBY_SNAPSHOT:")) {
+            String[] parts = message.split(":", 3);
+            Platform.runLater(() -> applySnapshot(Long.parseLong(parts[1]), parts.length > 2 ? parts[2] : ""));
+        } else if (message.startsWith("LOBBY_DELTA:")) {
+            String[] parts = message.split(":", 3);
+            Platform.runLater(() -> applyDelta(Long.parseLong(parts[1]), parts.length > 2 ? parts[2] : ""));
+        } else if (message.startsWith("SEARCH_RESULT:")) {
+            Platform.runLater(() -> showSearchResult(message.substring(14)));
+        } else if (message.startsWith("ROOM_LIST:")) {
+            String data = message.substring(10);
+            Platform.runLater(() -> applySnapshot(lobbyVersion, data));
         } else if (message.equals("ERROR:WRONG_PASSWORD")) {
             Platform.runLater(() -> {
                 showError("ACCESS DENIED", "Thou art not invited to this destiny.");
-                ClientConnection.getInstance().sendMessage("GET_ROOMS");
             });
         } else if (message.equals("ERROR:FULL")) {
             Platform.runLater(() -> {
                 showError("ROOM FULL", "There are too many souls in that room already.");
-                ClientConnection.getInstance().sendMessage("GET_ROOMS");
             });
         } else if (message.equals("ERROR:IN_GAME")) {
             Platform.runLater(() -> {
                 showError("FATE SEALED", "They done vainly wagered their fates in that room.");
-                ClientConnection.getInstance().sendMessage("GET_ROOMS");
             });
         } else if (message.equals("ERROR:ROOM_EXIST")) {
             Platform.runLater(() -> {
                 showError("DESTINY TAKEN", "A realm by that name has already been woven into existence.");
-                ClientConnection.getInstance().sendMessage("GET_ROOMS");
+            });
+        } else if (message.equals("ERROR:INVALID_NAME")) {
+            Platform.runLater(() -> {
+                showError("UNSPEAKABLE NAME", "A realm's name may bear neither ';' nor ','.");
             });
         } else if (message.equals("ERROR:ROOM_NOT_EXIST")) {
             Platform.runLater(() -> {
                 showError("VOID ENCOUNTERED", "The realm thou seekest has faded from existence.");
-                ClientConnection.getInstance().sendMessage("GET_ROOMS");
             });
+        } else if (message.equals("ERROR:NOT_IN_GAME")) {
+            Platform.runLater(() -> {
+                showError("NOTHING TO BEHOLD", "That destiny has not yet begun, or has already ended.");
+            });
+        } else if (message.equals("ERROR:SPECTATORS_FULL")) {
+            Platform.runLater(() -> {
+                showError("GALLERY FULL", "Too many eyes already watch that destiny unfold.");
+            });
+        } else if (message.startsWith("QUEUED:")) {
+            String[] parts = message.split(":");
+            Platform.runLater(() -> {
+                setQuickMatch(true);
+                statusLabel.setText("Awaiting " + parts[1] + " souls to share thy fate... (" + parts[2] + " gathered)");
+            });
+        } else if (message.equals("MATCH_CANCELLED")) {
+            Platform.runLater(() -> {
+                setQuickMatch(false);
+                statusLabel.setText("Thou hast withdrawn from the gathering.");
+            });
+        } else if (message.startsWith("MATCHED:")) {
+            // MATCHED:<room>:<id>:<token>; the game is already under way.
+            String[] parts = message.split(":");
+            ClientConnection.getInstance().myPlayerId = Integer.parseInt(parts[2]);
+            ClientConnection.getInstance().spectating = false;
+            Platform.runLater(() -> App.loadView("views/GameBoardView.fxml"));
         } else if (message.startsWith("MSG:") || message.startsWith("ERROR:")) {
             Platform.runLater(() -> statusLabel.setText(message.split(":", 2)[1]));
         } else if (message.startsWith("JOINED:")) {
             int myId = Integer.parseInt(message.split(":")[1]);
             ClientConnection.getInstance().myPlayerId = myId;
+            ClientConnection.getInstance().spectating = false;
             Platform.runLater(() -> App.loadView("views/RoomView.fxml"));
+        } else if (message.startsWith("SPECTATING:")) {
+            ClientConnection.getInstance().myPlayerId = -1;
+            ClientConnection.getInstance().spectating = true;
+            Platform.runLater(() -> App.loadView("views/GameBoardView.fxml"));
+        }
+    }
+
+    private void applySnapshot(long version, String data) {
+        lobbyVersion = version;
+        roomEntries.clear();
+        for (String roomStr : data.split(";")) {
+            if (!roomStr.isEmpty()) roomEntries.put(roomName(roomStr), roomStr);
+        }
+        if (!isSearchActive) renderRooms(roomEntries.values(), "");
+    }
+
+    private void applyDelta(long version, String data) {
+        if (version != lobbyVersion + 1) {
+            // Missed an update; ask for a fresh snapshot.
+            ClientConnection.getInstance().sendMessage("SUBSCRIBE_LOBBY");
+            return;
         }
+        lobbyVersion = version;
+
+        for (String change : data.split(";")) {
+            if (change.isEmpty()) continue;
+            String body = change.substring(1);
+            if (change.charAt(0) == '-') {
+                roomEntries.remove(body);
+            } else {
+                roomEntries.put(roomName(body), body);
+            }
+        }
+        if (!isSearchActive) renderRooms(roomEntries.values(), "");
+    }
+
+    // "<cursor>:<entry>;<entry>;..." where the cursor is escaped and empty on the last page.
+    private void showSearchResult(String data) {
+        if (!isSearchActive) return;
+        StringBuilder cursor = new StringBuilder();
+        int i = 0;
+        while (i < data.length() && data.charAt(i) != ':') {
+            char c = data.charAt(i++);
+            if (c == '\\' && i < data.length()) c = data.charAt(i++);
+            cursor.append(c);
+        }
+        String entries = (i < data.length()) ? data.substring(i + 1) : "";
+
+        List<String> rooms = new ArrayList<>();
+        for (String roomStr : entries.split(";")) {
+            if (!roomStr.isEmpty()) rooms.add(roomStr);
+        }
+        renderRooms(rooms, "");
+        if (rooms.isEmpty() && cursor.length() > 0) {
+            // The server stopped searching before it found anything.
+            statusLabel.setText("Too many rooms to search through. Narrow thy search.");
+        } else if (rooms.isEmpty()) {
+            statusLabel.setText("No rooms match '" + searchInput.getText().trim() + "'");
+        } else if (cursor.length() > 0) {
+            statusLabel.setText("Showing the first " + rooms.size() + " matches. Narrow thy search.");
+        }
+    }
+
+    private static String roomName(String roomStr) {
+        int comma = roomStr.indexOf(',');
+        return (comma < 0) ? roomStr : roomStr.substring(0, comma);
     }
 
-    private void renderRooms(String data, String filter) {
+    private void renderRooms(Collection<String> rooms, String filter) {
         roomContainer.getChildren().clear();
-        if (data.isEmpty()) {
+        if (rooms.isEmpty()) {
             statusLabel.setText("No rooms found. Create one!");
             return;
         }
 
-        String[] rooms = data.split(";");
         boolean foundMatch = false;
 
         for (String roomStr : rooms) {
@@ -257,11 +426,16 @@ public class LobbyController implements IncomingMessageListener {
         if (status.equals("IN GAME")) lblStatus.setStyle("-fx-text-fill: #e74c3c;"); 
         else lblStatus.setStyle("-fx-text-fill: #2ecc71;"); 
 
-        Button joinBtn = new Button("JOIN FATE");
-        joinBtn.getStyleClass().add("join-button");
         boolean isPrivate = type.equals("PRIVATE");
+        boolean inGame = status.equals("IN GAME");
+        Button joinBtn = new Button(inGame ? "WATCH FATE" : "JOIN FATE");
+        joinBtn.getStyleClass().add("join-button");
         
-        joinBtn.setOnAction(e -> handleJoinClick(name, status, count, isPrivate));
+        if (inGame) {
+            joinBtn.setOnAction(e -> handleWatchClick(name, isPrivate));
+        } else {
+            joinBtn.setOnAction(e -> handleJoinClick(name, status, count, isPrivate));
+        }
 
         card.getChildren().addAll(lblName, lblMaster, lblCount, lblStatus, joinBtn);
         overlay.getChildren().add(card);
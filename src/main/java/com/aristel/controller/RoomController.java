@@ -1,6 +1,7 @@
 package com.aristel.controller;
 
 import com.aristel.App;
+import com.aristel.log.Log;
 import com.aristel.network.ClientConnection;
 import com.aristel.network.IncomingMessageListener;
 import com.aristel.util.SoundManager;
@@ -72,7 +73,7 @@ public class RoomController implements IncomingMessageListener {
         else if (message.startsWith("GAME_START:")) {
             Platform.runLater(() -> App.loadView("views/GameBoardView.fxml"));
         }
-        else if (message.equals("LEFT_ROOM")) {
+        else if (message.equals("LEFT_ROOM") || message.equals("ERROR:RESUME_FAILED")) {
             Platform.runLater(() -> App.loadView("views/LobbyView.fxml"));
         }
         else if (message.equals("KICKED")) {
@@ -92,13 +93,18 @@ public class RoomController implements IncomingMessageListener {
 
     private void updateRoomUI(String message) {
         try {
-            String[] parts = message.split(":");
-            String roomName = parts[1];
+            // The room name may itself contain ':', so read the fixed fields from the end.
+            String body = message.substring("ROOM_STATE:".length());
+            int idsSep = body.lastIndexOf(':');
+            int countSep = body.lastIndexOf(':', idsSep - 1);
+            int masterSep = body.lastIndexOf(':', countSep - 1);
+            String roomName = body.substring(0, masterSep);
             
-            this.currentMasterId = Integer.parseInt(parts[2]);
+            this.currentMasterId = Integer.parseInt(body.substring(masterSep + 1, countSep));
             
-            int count = Integer.parseInt(parts[3]);
-            String[] playerIds = (parts.length > 4) ? parts[4].split(",") : new String[0];
+            int count = Integer.parseInt(body.substring(countSep + 1, idsSep));
+            String ids = body.substring(idsSep + 1);
+            String[] playerIds = ids.isEmpty() ? new String[0] : ids.split(",");
 
             roomNameLabel.setText(roomName);
             playerCountLabel.setText(count + "/4 Players");
@@ -114,7 +120,7 @@ public class RoomController implements IncomingMessageListener {
             renderCards(playerIds, currentMasterId);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("Could not render the room", e);
         }
     }
 
@@ -145,7 +151,7 @@ public class RoomController implements IncomingMessageListener {
             profileImg.setFitWidth(40);
             profileImg.setFitHeight(40);
             card.getChildren().add(profileImg);
-        } catch (Exception e) { System.err.println("Missing profile.png"); }
+        } catch (Exception e) { Log.warn("Missing profile.png"); }
 
         Label nameLbl = new Label("Player " + playerId);
         
@@ -164,7 +170,7 @@ public class RoomController implements IncomingMessageListener {
                 masterImg.setFitWidth(25);
                 masterImg.setFitHeight(25);
                 card.getChildren().add(masterImg);
-            } catch (Exception e) { System.err.println("Missing roommaster.png"); }
+            } catch (Exception e) { Log.warn("Missing roommaster.png"); }
         }
 
         HBox spacer = new HBox();
@@ -184,7 +190,7 @@ public class RoomController implements IncomingMessageListener {
                 kickBtn.setOnAction(e -> ClientConnection.getInstance().sendMessage("KICK:" + playerId));
                 
                 card.getChildren().add(kickBtn);
-            } catch (Exception e) { System.err.println("Missing kick.png"); }
+            } catch (Exception e) { Log.warn("Missing kick.png"); }
         }
 
         return card;
@@ -0,0 +1,424 @@
+package com.aristel.loadgen;
+
+import com.aristel.protocol.BinaryCodec;
+import com.aristel.protocol.Opcode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// One simulated player. A virtual thread reads the connection, exactly as ServerListener does
+// (HELLO:BIN1 upgrade, SEQUENCED/EV unwrapping, binary events turned back into text lines),
+// and hands every message to onMessage(). Actions run on LoadGenerator.timers after a think
+// delay. All state is guarded by the bot's monitor.
+//
+// Each bot keeps at most one request in flight and times it until the reply that answers it:
+// LOBBY_SNAPSHOT, ROOM_LIST, SEARCH_RESULT, JOINED (or an ERROR), QUEUED, GAME_START, the FLIP
+// of the clicked card and BACK_TO_ROOM.
+final class Bot {
+    private static final int HANDSHAKE_TIMEOUT_MS = 2000;
+
+    private final int index;
+    private final SplittableRandom random;
+    private Socket socket;
+    private OutputStream out;
+    private boolean binary;
+    private volatile boolean stopping = false;
+
+    private String pendingCommand;
+    private long pendingSince;
+    private int pendingCard = -1;
+    private long queuedSince;
+
+    private int browsesLeft;
+    private int myId = -1;
+    private int masterId = -1;
+    private boolean startRequested = false;
+    private boolean inGame = false;
+    private boolean myTurn = false;
+
+    // Image seen at each position (-1 if never seen) and the positions already matched.
+    private short[] known = new short[0];
+    private boolean[] matched = new boolean[0];
+    private int matchSize = 2;
+    private int[] turnFlips = new int[LoadGenerator.MATCH_SIZE];
+    private int turnFlipCount = 0;
+
+    Bot(int index) {
+        this.index = index;
+        this.random = new SplittableRandom(index * 0x9E3779B97F4A7C15L);
+    }
+
+    void start() {
+        Thread.ofVirtual().name("bot-" + index).start(this::run);
+    }
+
+    void stop() {
+        stopping = true;
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException e) {}
+    }
+
+    private void run() {
+        try {
+            InputStream in = open();
+            if (LoadGenerator.BINARY) {
+                try {
+                    binary = negotiateBinary(in);
+                } catch (SocketTimeoutException e) {
+                    // The server may yet switch that socket to binary; start over in text.
+                    socket.close();
+                    in = open();
+                }
+            }
+            LoadGenerator.connected.incrementAndGet();
+
+            synchronized (this) {
+                enterLobby();
+            }
+            if (binary) {
+                readFrames(in);
+            } else {
+                readLines(in);
+            }
+        } catch (IOException e) {
+            // Closed by stop() or by the server.
+        } finally {
+            if (out != null) LoadGenerator.connected.decrementAndGet();
+            if (!stopping) LoadGenerator.disconnects.incrementAndGet();
+        }
+    }
+
+    private InputStream open() throws IOException {
+        socket = new Socket(LoadGenerator.HOST, LoadGenerator.PORT);
+        socket.setTcpNoDelay(true);
+        out = new BufferedOutputStream(socket.getOutputStream());
+        return new BufferedInputStream(socket.getInputStream());
+    }
+
+    // Throws SocketTimeoutException if the reply is late; the socket is unusable after that.
+    private boolean negotiateBinary(InputStream in) throws IOException {
+        out.write((BinaryCodec.HANDSHAKE + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        try {
+            String reply = readLine(in);
+            return BinaryCodec.HANDSHAKE.equals(reply);
+        } finally {
+            if (!socket.isClosed()) socket.setSoTimeout(0);
+        }
+    }
+
+    private void readLines(InputStream in) throws IOException {
+        String line;
+        while ((line = readLine(in)) != null) {
+            if (line.startsWith("EV:")) line = line.substring(line.indexOf(':', 3) + 1);
+            deliver(line);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) return null;
+            if (b != '\r') sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+    private void readFrames(InputStream in) throws IOException {
+        int length;
+        while ((length = BinaryCodec.readVarint(in)) > 0) {
+            byte[] frame = in.readNBytes(length);
+            if (frame.length < length) break;
+
+            int pos = 0;
+            if (frame[0] == Opcode.SEQUENCED) {
+                pos = 1;
+                while ((frame[pos] & 0x80) != 0) pos++;
+                pos++;
+            }
+            if (frame[pos] == Opcode.TEXT) {
+                deliver(new String(frame, pos + 1, length - pos - 1, StandardCharsets.UTF_8));
+            } else {
+                deliver(BinaryCodec.toText(frame[pos], BinaryCodec.decodeFields(frame, pos + 1, length)));
+            }
+        }
+    }
+
+    private synchronized void deliver(String message) {
+        if (!stopping) onMessage(message);
+    }
+
+    private void onMessage(String message) {
+        String[] parts = message.split(":");
+        switch (parts[0]) {
+            case "LOBBY_SNAPSHOT":
+            case "ROOM_LIST":
+            case "SEARCH_RESULT":
+                if (complete(parts[0].equals("LOBBY_SNAPSHOT") ? "SUBSCRIBE_LOBBY"
+                        : parts[0].equals("ROOM_LIST") ? "GET_ROOMS" : "SEARCH_ROOMS")) {
+                    later(this::browse);
+                }
+                break;
+            case "QUEUED":
+                complete("QUICK_MATCH");
+                queuedSince = System.nanoTime();
+                break;
+            case "MATCHED":
+                LoadGenerator.record("MATCH_WAIT", System.nanoTime() - queuedSince);
+                myId = Integer.parseInt(parts[2]);
+                break;
+            case "JOINED":
+                complete(pendingCommand);
+                myId = Integer.parseInt(parts[1]);
+                break;
+            case "ERROR":
+                onError(message);
+                break;
+            case "ROOM_STATE":
+                // ROOM_STATE:<room>:<master>:<count>:<ids>; the room name may contain ':'.
+                masterId = Integer.parseInt(parts[parts.length - 3]);
+                maybeStart(Integer.parseInt(parts[parts.length - 2]));
+                break;
+            case "GAME_START":
+            case "GAME_INIT":
+                complete("START");
+                newBoard(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                break;
+            case "TURN":
+                turnFlipCount = 0;
+                myTurn = inGame && Integer.parseInt(parts[1]) == myId;
+                if (myTurn) later(this::click);
+                break;
+            case "FLIP":
+                onFlip(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                break;
+            case "MATCH":
+                for (int i = 0; i < turnFlipCount; i++) matched[turnFlips[i]] = true;
+                turnFlipCount = 0;
+                break;
+            case "HIDE":
+                turnFlipCount = 0;
+                break;
+            case "GAME_OVER":
+                inGame = false;
+                myTurn = false;
+                if (myId == masterId) {
+                    LoadGenerator.gamesFinished.incrementAndGet();
+                    later(() -> request("RESET_GAME", "RESET_GAME"));
+                }
+                break;
+            case "BACK_TO_ROOM":
+                complete("RESET_GAME");
+                inGame = false;
+                startRequested = false;
+                break;
+            case "LEFT_ROOM":
+            case "KICKED":
+                myId = -1;
+                inGame = false;
+                later(this::enterLobby);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onError(String message) {
+        String command = pendingCommand;
+        if (command == null) return;
+        pendingCommand = null;
+        LoadGenerator.error(command);
+
+        if (message.equals("ERROR:ROOM_EXIST")) {
+            // Left over from a crashed run or a slow peer; join it instead.
+            later(() -> request("JOIN", "JOIN:" + roomName()));
+        } else if (command.equals("JOIN") || command.equals("CREATE")) {
+            // The creator has not got there yet, or the room filled up; try again shortly.
+            LoadGenerator.timers.schedule(() -> act(this::joinRoom), 10 * think(), TimeUnit.MILLISECONDS);
+        } else {
+            later(this::browse);
+        }
+    }
+
+    private void enterLobby() {
+        browsesLeft = LoadGenerator.BROWSE;
+        request("SUBSCRIBE_LOBBY", "SUBSCRIBE_LOBBY");
+    }
+
+    private void browse() {
+        if (browsesLeft-- <= 0) {
+            joinRoom();
+        } else if (random.nextBoolean()) {
+            request("GET_ROOMS", "GET_ROOMS");
+        } else {
+            request("SEARCH_ROOMS", "SEARCH_ROOMS:lg:CONTAINS:ANY:ANY:0:20");
+        }
+    }
+
+    private void joinRoom() {
+        if (LoadGenerator.QUICK) {
+            request("QUICK_MATCH", "QUICK_MATCH:" + LoadGenerator.PLAYERS_PER_ROOM);
+        } else if (index % LoadGenerator.PLAYERS_PER_ROOM == 0) {
+            request("CREATE", "CREATE:" + roomName() + "::" + LoadGenerator.BOARD_CARDS + ":" + LoadGenerator.MATCH_SIZE);
+        } else {
+            request("JOIN", "JOIN:" + roomName());
+        }
+    }
+
+    private String roomName() {
+        return "lg-" + LoadGenerator.RUN_ID + "-" + (index / LoadGenerator.PLAYERS_PER_ROOM);
+    }
+
+    private void maybeStart(int playerCount) {
+        if (inGame || startRequested || myId != masterId) return;
+        if (playerCount < Math.min(LoadGenerator.PLAYERS_PER_ROOM, 4) || playerCount < 2) return;
+        startRequested = true;
+        // A quick-match room starts on its own; GAME_START may overtake the think delay.
+        later(() -> {
+            if (!inGame) request("START", "START");
+        });
+    }
+
+    private void newBoard(int totalCards, int size) {
+        inGame = true;
+        matchSize = size;
+        known = new short[totalCards];
+        Arrays.fill(known, (short) -1);
+        matched = new boolean[totalCards];
+        if (turnFlips.length < size) turnFlips = new int[size];
+        turnFlipCount = 0;
+    }
+
+    private void onFlip(int index, int image) {
+        if (index < 0 || index >= known.length) return;
+        known[index] = (short) image;
+        if (turnFlipCount < turnFlips.length) turnFlips[turnFlipCount++] = index;
+        if (pendingCard == index) {
+            complete("CLICK");
+            pendingCard = -1;
+        }
+
+        // Keep flipping while the set is still intact; MATCH or HIDE and TURN follow otherwise.
+        if (myTurn && turnFlipCount < matchSize && known[turnFlips[0]] == image) later(this::click);
+    }
+
+    private void click() {
+        if (!myTurn || !inGame) return;
+        int card = pickCard();
+        if (card < 0) return;
+        pendingCard = card;
+        request("CLICK", null);
+        if (binary) {
+            write(BinaryCodec.encode(Opcode.CLICK, new int[] { card }));
+        } else {
+            write(("CLICK:" + card + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private int pickCard() {
+        if (LoadGenerator.PERFECT) {
+            if (turnFlipCount == 0) {
+                int group = knownGroup();
+                if (group >= 0) return group;
+            } else {
+                int image = known[turnFlips[0]];
+                for (int i = 0; i < known.length; i++) {
+                    if (!matched[i] && known[i] == image && !flippedThisTurn(i)) return i;
+                }
+            }
+            int unseen = randomCard(true);
+            if (unseen >= 0) return unseen;
+        }
+        return randomCard(false);
+    }
+
+    // A position whose image has been seen at least matchSize times among unmatched cards.
+    private int knownGroup() {
+        Map<Integer, Integer> seen = new HashMap<>();
+        for (int i = 0; i < known.length; i++) {
+            if (matched[i] || known[i] < 0) continue;
+            if (seen.merge((int) known[i], 1, Integer::sum) >= matchSize) {
+                for (int j = 0; j < known.length; j++) {
+                    if (!matched[j] && known[j] == known[i]) return j;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // A random face-down card not flipped this turn, optionally only among never-seen ones.
+    private int randomCard(boolean unseenOnly) {
+        int choice = -1;
+        int candidates = 0;
+        for (int i = 0; i < known.length; i++) {
+            if (matched[i] || flippedThisTurn(i) || (unseenOnly && known[i] >= 0)) continue;
+            if (random.nextInt(++candidates) == 0) choice = i;
+        }
+        return choice;
+    }
+
+    private boolean flippedThisTurn(int index) {
+        for (int i = 0; i < turnFlipCount; i++) {
+            if (turnFlips[i] == index) return true;
+        }
+        return false;
+    }
+
+    // Sends line (if not null) and starts timing command. A request still waiting for its
+    // reply is counted as an error.
+    private void request(String command, String line) {
+        if (pendingCommand != null) LoadGenerator.error(pendingCommand);
+        pendingCommand = command;
+        pendingSince = System.nanoTime();
+        if (line == null) return;
+        write(binary ? BinaryCodec.encodeText(line) : (line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean complete(String command) {
+        if (command == null || !command.equals(pendingCommand)) return false;
+        LoadGenerator.record(command, System.nanoTime() - pendingSince);
+        pendingCommand = null;
+        return true;
+    }
+
+    private void write(byte[] bytes) {
+        try {
+            out.write(bytes);
+            out.flush();
+        } catch (IOException e) {
+            stop();
+        }
+    }
+
+    private long think() {
+        long think = LoadGenerator.THINK_MS;
+        return (think <= 0) ? 0 : think / 2 + random.nextLong(think);
+    }
+
+    private void later(Runnable action) {
+        long delay = think();
+        if (delay == 0) {
+            action.run();
+        } else {
+            LoadGenerator.timers.schedule(() -> act(action), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void act(Runnable action) {
+        if (!stopping) action.run();
+    }
+}
@@ -0,0 +1,119 @@
+package com.aristel.loadgen;
+
+import com.aristel.server.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless load generator: thousands of Bot connections that browse the lobby, create and
+// join rooms (or QUICK_MATCH), start games and play them to the end, over and over. Prints a
+// progress line every few seconds and, at the end, throughput and p50/p99/p999 latency per
+// command. Run with java -cp Server.jar com.aristel.loadgen.LoadGenerator and configure it
+// with -Dloadgen.* properties (see the fields below).
+public final class LoadGenerator {
+    static final String HOST = System.getProperty("loadgen.host", "localhost");
+    static final int PORT = Integer.getInteger("loadgen.port", 12345);
+    static final int BOTS = Integer.getInteger("loadgen.bots", 100);
+    static final long DURATION_MS = Long.getLong("loadgen.durationSec", 60) * 1000;
+    // Connections are opened evenly over this long.
+    static final long RAMP_MS = Long.getLong("loadgen.rampMs", 10_000);
+    static final boolean BINARY = !System.getProperty("loadgen.protocol", "binary").equals("text");
+    // "rooms": every group of playersPerRoom bots creates and joins a named room; "quick": QUICK_MATCH.
+    static final boolean QUICK = System.getProperty("loadgen.mode", "rooms").equals("quick");
+    static final int PLAYERS_PER_ROOM = Integer.getInteger("loadgen.playersPerRoom", 2);
+    static final int BOARD_CARDS = Integer.getInteger("loadgen.boardCards", 0);
+    static final int MATCH_SIZE = Integer.getInteger("loadgen.matchSize", 2);
+    // "random" clicks any face-down card; "perfect" remembers every card it has seen.
+    static final boolean PERFECT = System.getProperty("loadgen.strategy", "perfect").equals("perfect");
+    // Pause before each action a human would take.
+    static final long THINK_MS = Long.getLong("loadgen.thinkMs", 100);
+    // GET_ROOMS / SEARCH_ROOMS sent from the lobby before each create or join.
+    static final int BROWSE = Integer.getInteger("loadgen.browse", 2);
+    static final long REPORT_MS = Long.getLong("loadgen.reportSec", 10) * 1000;
+
+    static final ScheduledExecutorService timers = Executors.newScheduledThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), task -> {
+                Thread thread = new Thread(task, "loadgen-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+    static final AtomicInteger connected = new AtomicInteger();
+    static final AtomicLong gamesFinished = new AtomicLong();
+    static final AtomicLong disconnects = new AtomicLong();
+    // Unique per run, so room names never collide with an earlier run on the same server.
+    static final String RUN_ID = Long.toString(System.currentTimeMillis() % 1_000_000_000L, 36);
+
+    private LoadGenerator() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("Load generator: " + BOTS + " bots against " + HOST + ":" + PORT + " for "
+                + DURATION_MS / 1000 + "s (" + (QUICK ? "quick match" : PLAYERS_PER_ROOM + " per room") + ", "
+                + (PERFECT ? "perfect" : "random") + " play, " + (BINARY ? "binary" : "text") + " protocol)");
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(DURATION_MS);
+        timers.scheduleAtFixedRate(() -> progress(start), REPORT_MS, REPORT_MS, TimeUnit.MILLISECONDS);
+
+        List<Bot> bots = new ArrayList<>(BOTS);
+        long gapNanos = TimeUnit.MILLISECONDS.toNanos(RAMP_MS) / Math.max(1, BOTS);
+        for (int i = 0; i < BOTS && System.nanoTime() < deadline; i++) {
+            Bot bot = new Bot(i);
+            bots.add(bot);
+            bot.start();
+            if (gapNanos > 0) TimeUnit.NANOSECONDS.sleep(gapNanos);
+        }
+
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, deadline - System.nanoTime()));
+        for (Bot bot : bots) bot.stop();
+        report((System.nanoTime() - start) / 1e9);
+        System.exit(0);
+    }
+
+    static void record(String command, long nanos) {
+        latencies.computeIfAbsent(command, c -> new LatencyHistogram()).record(nanos);
+    }
+
+    static void error(String command) {
+        errors.computeIfAbsent(command, c -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static void progress(long start) {
+        long elapsed = (System.nanoTime() - start) / 1_000_000_000L;
+        long requests = 0;
+        for (LatencyHistogram h : latencies.values()) requests += h.count();
+        System.out.println(String.format(Locale.ROOT, "[%4ds] connected=%d requests=%d games=%d disconnects=%d",
+                elapsed, connected.get(), requests, gamesFinished.get(), disconnects.get()));
+    }
+
+    private static void report(double seconds) {
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-16s %10s %8s %10s %9s %9s %9s %9s",
+                "command", "count", "errors", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        List<String> commands = new ArrayList<>(latencies.keySet());
+        for (String c : errors.keySet()) {
+            if (!commands.contains(c)) commands.add(c);
+        }
+        commands.sort(null);
+        for (String command : commands) {
+            LatencyHistogram h = latencies.getOrDefault(command, new LatencyHistogram());
+            long count = h.count();
+            AtomicLong failed = errors.get(command);
+            System.out.println(String.format(Locale.ROOT, "%-16s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f",
+                    command, count, (failed == null) ? 0 : failed.get(), count / seconds,
+                    h.percentile(0.50) / 1e6, h.percentile(0.99) / 1e6, h.percentile(0.999) / 1e6, h.max() / 1e6));
+        }
+        System.out.println(String.format(Locale.ROOT, "%n%.1fs, %d games finished, %d unexpected disconnects",
+                seconds, gamesFinished.get(), disconnects.get()));
+    }
+}
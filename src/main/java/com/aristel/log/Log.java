@@ -0,0 +1,211 @@
+package com.aristel.log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Asynchronous logger shared by client and server. A call that passes the level check
+// claims a slot in a fixed ring with one CAS and returns; the "log-writer" thread formats
+// and writes the records, so a network thread never waits on the console or a disk.
+// When the ring is full the record is dropped and counted rather than blocking.
+//
+// Callers guard anything that builds a message: if (Log.debug()) Log.debug("..." + x);
+// A disabled level then costs one field read.
+//
+// -Dmemory.log.level   ERROR, WARN, INFO (default) or DEBUG; also setLevel() at runtime.
+// -Dmemory.log.file    write to this file instead of the console, rolling it over at
+// -Dmemory.log.maxMb   (default 10) and keeping -Dmemory.log.keep old files (default 5).
+public final class Log {
+    public enum Level { ERROR, WARN, INFO, DEBUG }
+
+    private static final int CAPACITY = Integer.highestOneBit(Math.max(64, Integer.getInteger("memory.log.bufferSize", 8192)));
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_NANOS = 5_000_000L;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+
+    // Vyukov-style bounded ring: slot i is free for ticket t when sequence[i] == t and
+    // readable when sequence[i] == t + 1. Fields are published by the sequence write.
+    private static final AtomicLongArray sequence = new AtomicLongArray(CAPACITY);
+    private static final long[] times = new long[CAPACITY];
+    private static final Level[] levels = new Level[CAPACITY];
+    private static final String[] threads = new String[CAPACITY];
+    private static final String[] messages = new String[CAPACITY];
+    private static final Throwable[] errors = new Throwable[CAPACITY];
+    private static final AtomicLong tail = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    // Consumer position; only read and written inside drain().
+    private static long head = 0;
+
+    private static volatile int threshold = parseLevel(System.getProperty("memory.log.level", "INFO")).ordinal();
+    private static final Writer out;
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) sequence.set(i, i);
+
+        String file = System.getProperty("memory.log.file", "");
+        Writer w;
+        if (file.isEmpty()) {
+            w = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        } else {
+            w = new RollingFileWriter(file, Long.getLong("memory.log.maxMb", 10) << 20, Integer.getInteger("memory.log.keep", 5));
+        }
+        out = w;
+
+        writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+    }
+
+    private Log() {}
+
+    public static boolean debug() {
+        return threshold >= Level.DEBUG.ordinal();
+    }
+
+    public static boolean enabled(Level level) {
+        return threshold >= level.ordinal();
+    }
+
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public static void warn(String message, Throwable error) {
+        log(Level.WARN, message, error);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    public static void error(String message, Throwable error) {
+        log(Level.ERROR, message, error);
+    }
+
+    public static long droppedCount() {
+        return dropped.get();
+    }
+
+    public static void log(Level level, String message, Throwable error) {
+        if (threshold < level.ordinal()) return;
+
+        long ticket;
+        int slot;
+        do {
+            ticket = tail.get();
+            slot = (int) ticket & MASK;
+            long seq = sequence.get(slot);
+            if (seq < ticket) {
+                // The writer has not freed this slot yet: the ring is full.
+                dropped.incrementAndGet();
+                return;
+            }
+            if (seq > ticket) continue;
+        } while (!tail.compareAndSet(ticket, ticket + 1));
+
+        times[slot] = System.currentTimeMillis();
+        levels[slot] = level;
+        threads[slot] = Thread.currentThread().getName();
+        messages[slot] = message;
+        errors[slot] = error;
+        sequence.set(slot, ticket + 1);
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            try {
+                if (drain() == 0) LockSupport.parkNanos(IDLE_NANOS);
+            } catch (IOException | RuntimeException e) {
+                // Nowhere left to report it, not even a failing toString() or formatter; keep
+                // draining so producers never fill up.
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    // Writes every published record, then flushes. Returns how many were written.
+    private static synchronized int drain() throws IOException {
+        int count = 0;
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            out.write(TIME.format(Instant.now()) + " WARN  [log-writer] " + lost + " log records dropped, buffer full\n");
+        }
+        while (true) {
+            int slot = (int) head & MASK;
+            if (sequence.get(slot) != head + 1) break;
+
+            String line;
+            try {
+                line = format(slot);
+            } catch (RuntimeException e) {
+                // A throwing toString() must not wedge the ring on this slot.
+                line = TIME.format(Instant.ofEpochMilli(times[slot])) + " WARN  [log-writer] unprintable "
+                        + levels[slot] + " record: " + e.getClass().getName() + "\n";
+            }
+            messages[slot] = null;
+            errors[slot] = null;
+            threads[slot] = null;
+            sequence.set(slot, head + CAPACITY);
+            head++;
+            out.write(line);
+            count++;
+        }
+        if (count > 0 || lost > 0) out.flush();
+        return count;
+    }
+
+    private static String format(int slot) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(TIME.format(Instant.ofEpochMilli(times[slot]))).append(' ');
+        String name = levels[slot].name();
+        sb.append(name);
+        for (int i = name.length(); i < 6; i++) sb.append(' ');
+        sb.append('[').append(threads[slot]).append("] ").append(messages[slot]).append('\n');
+        if (errors[slot] != null) {
+            StringWriter trace = new StringWriter();
+            errors[slot].printStackTrace(new PrintWriter(trace));
+            sb.append(trace);
+        }
+        return sb.toString();
+    }
+
+    // Writes out whatever is queued; the shutdown hook calls it so the last records survive.
+    public static void flush() {
+        try {
+            drain();
+        } catch (IOException e) {}
+    }
+
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.aristel.log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Appends to <file>; once it passes maxBytes it becomes <file>.1, the older ones shift up to
+// <file>.<keep> and the oldest is deleted. Only used by Log's writer thread.
+final class RollingFileWriter extends Writer {
+    private final Path path;
+    private final long maxBytes;
+    private final int keep;
+    private Writer out;
+    private long size;
+
+    RollingFileWriter(String file, long maxBytes, int keep) {
+        this.path = Paths.get(file);
+        this.maxBytes = Math.max(1024, maxBytes);
+        this.keep = Math.max(0, keep);
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open log file " + path, e);
+        }
+    }
+
+    private void open() throws IOException {
+        out = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        size = Files.size(path);
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        Files.deleteIfExists(sibling(keep));
+        for (int i = keep - 1; i >= 1; i--) {
+            if (Files.exists(sibling(i))) Files.move(sibling(i), sibling(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (keep > 0) {
+            Files.move(path, sibling(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(path);
+        }
+        open();
+    }
+
+    private Path sibling(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    @Override
+    public void write(char[] buf, int off, int len) throws IOException {
+        out.write(buf, off, len);
+        // Close enough for rolling: one byte per char unless the message is not ASCII.
+        size += len;
+        if (size >= maxBytes) {
+            out.flush();
+            roll();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -1,16 +1,43 @@
 package com.aristel.network;
 
+import com.aristel.log.Log;
+import com.aristel.protocol.BinaryCodec;
+import com.aristel.protocol.Opcode;
+
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 
 public class ClientConnection {
+    // Run with -Dmemory.client.protocol=text to skip the binary handshake.
+    private static final boolean WANTS_BINARY = !"text".equals(System.getProperty("memory.client.protocol", "binary"));
+    private static final int HANDSHAKE_TIMEOUT_MS = 2000;
+    private static final int RECONNECT_ATTEMPTS = 5;
+    private static final long RECONNECT_BACKOFF_MS = 500;
+
     private static ClientConnection instance;
     private Socket socket;
     private PrintWriter out;
+    private OutputStream binaryOut;
+    private boolean binary = false;
     private ServerListener listenerThread;
+    private IncomingMessageListener messageListener;
+    private String host;
+    private int port;
+    // Issued with JOINED while seated in a room; RESUME presents it after a dropped connection.
+    private volatile String sessionToken;
+    // Sequence number of the last room event received.
+    private volatile int lastSeq = 0;
+    // The ERROR:<code> line a server at capacity answered the connection with, if any.
+    private volatile String refusal;
     private ClientConnection() {}
     public int myPlayerId = -1;
+    // True while watching a game through SPECTATE rather than playing in it.
+    public boolean spectating = false;
 
     public static ClientConnection getInstance() {
         if (instance == null) {
@@ -20,39 +47,161 @@ public class ClientConnection {
     }
 
     public boolean connect(String ip, int port) {
+        this.host = ip;
+        this.port = port;
+        this.sessionToken = null;
+        this.refusal = null;
         try {
-            socket = new Socket(ip, port);
-            out = new PrintWriter(socket.getOutputStream(), true);
-
-            listenerThread = new ServerListener(socket);
-            listenerThread.start();
-            
+            open();
             return true;
         } catch (IOException e) {
-            System.err.println("Connection failed: " + e.getMessage());
+            Log.warn("Connection failed: " + e.getMessage());
             return false;
         }
     }
 
+    private void open() throws IOException {
+        openSocket();
+        binary = false;
+        if (WANTS_BINARY) {
+            try {
+                binary = negotiateBinary();
+            } catch (SocketTimeoutException e) {
+                // A slow reply may still arrive, with the server already framing in binary;
+                // rather than guess, start over on a fresh socket in text.
+                Log.info("Binary handshake timed out; reconnecting in text mode.");
+                socket.close();
+                openSocket();
+            }
+        }
+        // Ask for numbered room events so a dropped connection can RESUME where it stopped.
+        sendMessage("RESUMABLE");
+
+        listenerThread = new ServerListener(socket, binary);
+        listenerThread.setMessageListener(messageListener);
+        listenerThread.start();
+    }
+
+    // Called by a ServerListener whose socket died without disconnect() being called.
+    // While seated in a room, reconnects with backoff and asks the server to resume.
+    void connectionLost(ServerListener listener) {
+        String token = sessionToken;
+        if (listener != listenerThread || token == null) return;
+
+        for (int attempt = 1; attempt <= RECONNECT_ATTEMPTS; attempt++) {
+            try {
+                Thread.sleep(RECONNECT_BACKOFF_MS * attempt);
+                open();
+                sendMessage("RESUME:" + token + ":" + lastSeq);
+                return;
+            } catch (IOException e) {
+                Log.warn("Reconnect attempt " + attempt + " failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Tracks the session and sequence state from inbound messages before they are delivered.
+    void onReceived(String message) {
+        if (message.startsWith("JOINED:")) {
+            String[] parts = message.split(":");
+            if (parts.length > 2) sessionToken = parts[2];
+        } else if (message.startsWith("MATCHED:")) {
+            String[] parts = message.split(":");
+            if (parts.length > 3) sessionToken = parts[3];
+        } else if (message.equals("LEFT_ROOM") || message.equals("KICKED") || message.equals("ERROR:RESUME_FAILED")) {
+            sessionToken = null;
+        } else if (message.startsWith("RESUMED:")) {
+            lastSeq = Integer.parseInt(message.split(":")[2]);
+        }
+    }
+
+    // Why the last connect() failed, when the server said so; null otherwise.
+    public String getRefusal() {
+        return refusal;
+    }
+
+    void onSequence(int seq) {
+        lastSeq = seq;
+    }
+
+    private void openSocket() throws IOException {
+        socket = new Socket(host, port);
+        out = new PrintWriter(socket.getOutputStream(), true);
+        binaryOut = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    // Throws SocketTimeoutException if the reply is late; the socket is unusable after that.
+    private boolean negotiateBinary() throws IOException {
+        out.println(BinaryCodec.HANDSHAKE);
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        try {
+            // Read byte by byte so nothing after the reply line is consumed here.
+            InputStream in = socket.getInputStream();
+            StringBuilder reply = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') reply.append((char) b);
+            String line = reply.toString().trim();
+            if (line.startsWith("ERROR:")) {
+                // The server refused us before reading HELLO and has closed the socket.
+                refusal = line;
+                socket.close();
+                throw new IOException("Server refused the connection: " + line);
+            }
+            return line.equals(BinaryCodec.HANDSHAKE);
+        } finally {
+            if (!socket.isClosed()) socket.setSoTimeout(0);
+        }
+    }
+
     public void sendMessage(String message) {
         if (out != null) {
-            System.out.println("[CLIENT SENT] " + message); 
-            out.println(message);
+            if (Log.debug()) Log.debug("[CLIENT SENT] " + message);
+            if (binary) {
+                writeFrame(BinaryCodec.encodeText(message));
+            } else {
+                out.println(message);
+            }
         }
     }
 
+    public void sendClick(int cardIndex) {
+        if (binary) {
+            if (Log.debug()) Log.debug("[CLIENT SENT] CLICK:" + cardIndex);
+            writeFrame(BinaryCodec.encode(Opcode.CLICK, new int[] { cardIndex }));
+        } else {
+            sendMessage("CLICK:" + cardIndex);
+        }
+    }
+
+    private synchronized void writeFrame(byte[] frame) {
+        try {
+            binaryOut.write(frame);
+            binaryOut.flush();
+        } catch (IOException e) {
+            Log.warn("Send failed: " + e.getMessage());
+        }
+    }
+
+    // Escapes a free-text field (room name, password) so ':' cannot split it.
+    public static String escape(String field) {
+        return field.replace("\\", "\\\\").replace(":", "\\:");
+    }
+
     public void disconnect() {
         try {
             if (listenerThread != null) listenerThread.stopListening();
             if (socket != null) socket.close();
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.warn("Error closing the connection", e);
         }
     }
 
     public void setMessageListener(IncomingMessageListener listener) {
+        this.messageListener = listener;
         if (listenerThread != null) {
             listenerThread.setMessageListener(listener);
         }
     }
-}
\ No newline at end of file
+}
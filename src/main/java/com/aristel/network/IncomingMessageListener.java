@@ -1,5 +1,12 @@
 package com.aristel.network;
 
+import com.aristel.protocol.GameEvent;
+
 public interface IncomingMessageListener {
     void onMessageReceived(String message);
-}
\ No newline at end of file
+
+    // Binary-mode game events; listeners that only understand text get the PREFIX:PAYLOAD form.
+    default void onGameEvent(GameEvent event) {
+        onMessageReceived(event.toText());
+    }
+}
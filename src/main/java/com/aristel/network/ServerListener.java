@@ -1,19 +1,29 @@
 package com.aristel.network;
 
+import com.aristel.log.Log;
+import com.aristel.protocol.BinaryCodec;
+import com.aristel.protocol.GameEvent;
+import com.aristel.protocol.Opcode;
+
 import javafx.application.Platform;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 
 public class ServerListener extends Thread {
     private Socket socket;
+    private boolean binary;
     private BufferedReader in;
     private volatile boolean running = true;
     private IncomingMessageListener currentListener; 
 
-    public ServerListener(Socket socket) {
+    public ServerListener(Socket socket, boolean binary) {
         this.socket = socket;
+        this.binary = binary;
     }
 
     public void setMessageListener(IncomingMessageListener listener) {
@@ -27,21 +37,74 @@ public class ServerListener extends Thread {
     @Override
     public void run() {
         try {
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            String message;
-
-            while (running && (message = in.readLine()) != null) {
-                System.out.println("[CLIENT RECEIVED] " + message); 
+            if (binary) {
+                readFrames();
+            } else {
+                in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                String message;
 
-                if (currentListener != null) {
-                    final String finalMsg = message;
-                    Platform.runLater(() -> {
-                        currentListener.onMessageReceived(finalMsg);
-                    });
+                while (running && (message = in.readLine()) != null) {
+                    deliver(unwrap(message));
                 }
             }
         } catch (IOException e) {
-            System.out.println("Connection lost or closed.");
+            Log.info("Connection lost or closed.");
+        }
+        if (running) ClientConnection.getInstance().connectionLost(this);
+    }
+
+    // Strips the EV:<seq>: wrapper of a numbered room event, recording the number.
+    private String unwrap(String message) {
+        if (!message.startsWith("EV:")) return message;
+        int colon = message.indexOf(':', 3);
+        if (colon < 0) return message;
+        ClientConnection.getInstance().onSequence(Integer.parseInt(message.substring(3, colon)));
+        return message.substring(colon + 1);
+    }
+
+    private void readFrames() throws IOException {
+        InputStream stream = new BufferedInputStream(socket.getInputStream());
+        int length;
+
+        while (running && (length = BinaryCodec.readVarint(stream)) > 0) {
+            byte[] frame = stream.readNBytes(length);
+            if (frame.length < length) break;
+
+            int pos = 0;
+            if (frame[0] == Opcode.SEQUENCED) {
+                ClientConnection.getInstance().onSequence(BinaryCodec.readVarint(frame, 1));
+                pos = 1;
+                while ((frame[pos] & 0x80) != 0) pos++;
+                pos++;
+            }
+
+            if (frame[pos] == Opcode.TEXT) {
+                deliver(new String(frame, pos + 1, length - pos - 1, StandardCharsets.UTF_8));
+            } else {
+                deliver(new GameEvent(frame[pos], BinaryCodec.decodeFields(frame, pos + 1, length)));
+            }
+        }
+    }
+
+    private void deliver(String message) {
+        if (Log.debug()) Log.debug("[CLIENT RECEIVED] " + message);
+        ClientConnection.getInstance().onReceived(message);
+
+        if (currentListener != null) {
+            final String finalMsg = message;
+            Platform.runLater(() -> {
+                currentListener.onMessageReceived(finalMsg);
+            });
+        }
+    }
+
+    private void deliver(GameEvent event) {
+        if (Log.debug()) Log.debug("[CLIENT RECEIVED] " + event.toText());
+
+        if (currentListener != null) {
+            Platform.runLater(() -> {
+                currentListener.onGameEvent(event);
+            });
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,151 @@
+package com.aristel.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Binary frames are [varint payload length][opcode byte][payload]. Int fields are
+// unsigned varints; a TEXT payload is the UTF-8 line without its newline.
+public final class BinaryCodec {
+    // Sent as a text line right after connecting. The server echoes it back and both
+    // sides switch to binary frames, or answers HANDSHAKE_DECLINED and stays in text mode.
+    public static final String HANDSHAKE = "HELLO:BIN1";
+    public static final String HANDSHAKE_DECLINED = "HELLO:TEXT";
+
+    private BinaryCodec() {}
+
+    public static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static int writeVarint(byte[] dst, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            dst[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[pos++] = (byte) value;
+        return pos;
+    }
+
+    public static byte[] encode(int opcode, int[] fields) {
+        int payload = 1;
+        for (int f : fields) payload += varintSize(f);
+
+        byte[] out = new byte[varintSize(payload) + payload];
+        int pos = writeVarint(out, 0, payload);
+        out[pos++] = (byte) opcode;
+        for (int f : fields) pos = writeVarint(out, pos, f);
+        return out;
+    }
+
+    public static byte[] encodeText(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        int payload = 1 + utf8.length;
+
+        byte[] out = new byte[varintSize(payload) + payload];
+        int pos = writeVarint(out, 0, payload);
+        out[pos++] = (byte) Opcode.TEXT;
+        System.arraycopy(utf8, 0, out, pos, utf8.length);
+        return out;
+    }
+
+    // Wraps an encoded frame as the payload of a SEQUENCED frame numbered seq.
+    public static byte[] encodeSequenced(int seq, byte[] frame) {
+        int innerStart = 0;
+        while ((frame[innerStart] & 0x80) != 0) innerStart++;
+        innerStart++;
+        int innerLength = frame.length - innerStart;
+        int payload = 1 + varintSize(seq) + innerLength;
+
+        byte[] out = new byte[varintSize(payload) + payload];
+        int pos = writeVarint(out, 0, payload);
+        out[pos++] = (byte) Opcode.SEQUENCED;
+        pos = writeVarint(out, pos, seq);
+        System.arraycopy(frame, innerStart, out, pos, innerLength);
+        return out;
+    }
+
+    // Decodes the varint fields stored in buf[offset, end).
+    public static int[] decodeFields(byte[] buf, int offset, int end) {
+        int count = 0;
+        for (int i = offset; i < end; i++) {
+            if ((buf[i] & 0x80) == 0) count++;
+        }
+
+        int[] fields = new int[count];
+        int pos = offset;
+        for (int n = 0; n < count; n++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            fields[n] = value;
+        }
+        return fields;
+    }
+
+    public static int readVarint(byte[] buf, int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf[pos++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        return value;
+    }
+
+    // A non-negative varint that must end before index end; -1 if it runs past end or does
+    // not fit in an int. For frames taken off the wire, where the bytes after end are stale.
+    public static int readVarint(byte[] buf, int pos, int end) {
+        int value = 0;
+        for (int shift = 0; pos < end && shift < 32; shift += 7) {
+            byte b = buf[pos++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return (value >= 0) ? value : -1;
+        }
+        return -1;
+    }
+
+    // Returns -1 on a clean end of stream before the first byte.
+    public static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) return -1;
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+            if (shift > 28) throw new IOException("Malformed varint");
+        }
+    }
+
+    // Renders a structured event in the PREFIX:PAYLOAD form the text protocol uses.
+    public static String toText(int opcode, int[] fields) {
+        StringBuilder sb = new StringBuilder(Opcode.name(opcode));
+        if (opcode == Opcode.SCORES) {
+            sb.append(':');
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                sb.append(fields[i]).append('=').append(fields[i + 1]).append(',');
+            }
+            return sb.toString();
+        }
+        for (int f : fields) sb.append(':').append(f);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package com.aristel.protocol;
+
+// Image ids the server may deal. The first FACES ids are the plain tarot faces; every
+// further id reuses face (id % FACES) with a tint ((id / FACES) % TINTS) and, past the
+// tinted copies, a numbered mark ((id / FACES) / TINTS), so clients need no extra art.
+public final class CardCatalogue {
+    public static final int FACES = 20;
+    public static final int TINTS = 8;
+    public static final int MARKS = 8;
+    public static final int SIZE = FACES * TINTS * MARKS;
+
+    private CardCatalogue() {}
+
+    public static int face(int imageId) {
+        return imageId % FACES;
+    }
+
+    // 0 is the untinted face.
+    public static int tint(int imageId) {
+        return (imageId / FACES) % TINTS;
+    }
+
+    // 0 means no mark.
+    public static int mark(int imageId) {
+        return imageId / (FACES * TINTS);
+    }
+}
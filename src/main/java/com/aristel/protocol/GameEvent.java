@@ -0,0 +1,16 @@
+package com.aristel.protocol;
+
+// A structured message decoded from a binary frame.
+public final class GameEvent {
+    public final int opcode;
+    public final int[] fields;
+
+    public GameEvent(int opcode, int[] fields) {
+        this.opcode = opcode;
+        this.fields = fields;
+    }
+
+    public String toText() {
+        return BinaryCodec.toText(opcode, fields);
+    }
+}
@@ -0,0 +1,97 @@
+package com.aristel.protocol;
+
+// Everything needed to draw a game in progress, carried as the int fields of one
+// GAME_SNAPSHOT frame:
+//   totalCards, matchSize, turnPlayerId,
+//   playerCount, then (playerId, score, connected 0/1) per player,
+//   wordCount, then the matched-card bitmap as 32-bit words (bit i of word i / 32),
+//   the image id of every matched card in index order (one per set bit),
+//   faceUpCount, then (index, imageId) per card that is face up but not matched.
+public final class GameSnapshot {
+    public final int totalCards;
+    public final int matchSize;
+    public final int turnPlayerId;
+    public final int[] playerIds;
+    public final int[] scores;
+    public final boolean[] connected;
+    // Parallel arrays of card index and image id for every card showing its face.
+    public final int[] shownIndices;
+    public final int[] shownImages;
+
+    private GameSnapshot(int totalCards, int matchSize, int turnPlayerId, int[] playerIds, int[] scores,
+                         boolean[] connected, int[] shownIndices, int[] shownImages) {
+        this.totalCards = totalCards;
+        this.matchSize = matchSize;
+        this.turnPlayerId = turnPlayerId;
+        this.playerIds = playerIds;
+        this.scores = scores;
+        this.connected = connected;
+        this.shownIndices = shownIndices;
+        this.shownImages = shownImages;
+    }
+
+    // players holds (playerId, score, connected) triples, faceUp (index, imageId) pairs.
+    public static int[] encode(int totalCards, int matchSize, int turnPlayerId, int[] players,
+                               int[] matchedWords, int[] matchedImages, int[] faceUp) {
+        int[] fields = new int[5 + players.length + matchedWords.length + matchedImages.length + 1 + faceUp.length];
+        int pos = 0;
+        fields[pos++] = totalCards;
+        fields[pos++] = matchSize;
+        fields[pos++] = turnPlayerId;
+        fields[pos++] = players.length / 3;
+        System.arraycopy(players, 0, fields, pos, players.length);
+        pos += players.length;
+        fields[pos++] = matchedWords.length;
+        System.arraycopy(matchedWords, 0, fields, pos, matchedWords.length);
+        pos += matchedWords.length;
+        System.arraycopy(matchedImages, 0, fields, pos, matchedImages.length);
+        pos += matchedImages.length;
+        fields[pos++] = faceUp.length / 2;
+        System.arraycopy(faceUp, 0, fields, pos, faceUp.length);
+        return fields;
+    }
+
+    public static GameSnapshot decode(int[] f) {
+        int pos = 0;
+        int totalCards = f[pos++];
+        int matchSize = f[pos++];
+        int turnPlayerId = f[pos++];
+
+        int playerCount = f[pos++];
+        int[] playerIds = new int[playerCount];
+        int[] scores = new int[playerCount];
+        boolean[] connected = new boolean[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            playerIds[i] = f[pos++];
+            scores[i] = f[pos++];
+            connected[i] = f[pos++] != 0;
+        }
+
+        int wordCount = f[pos++];
+        int wordsStart = pos;
+        int matchedCount = 0;
+        for (int i = 0; i < wordCount; i++) matchedCount += Integer.bitCount(f[pos++]);
+
+        int faceUpCount = f[pos + matchedCount];
+        int[] shownIndices = new int[matchedCount + faceUpCount];
+        int[] shownImages = new int[matchedCount + faceUpCount];
+        int n = 0;
+        for (int w = 0; w < wordCount; w++) {
+            int word = f[wordsStart + w];
+            while (word != 0) {
+                shownIndices[n] = w * 32 + Integer.numberOfTrailingZeros(word);
+                shownImages[n] = f[pos++];
+                word &= word - 1;
+                n++;
+            }
+        }
+        pos++;
+        for (int i = 0; i < faceUpCount; i++) {
+            shownIndices[n] = f[pos++];
+            shownImages[n] = f[pos++];
+            n++;
+        }
+
+        return new GameSnapshot(totalCards, matchSize, turnPlayerId, playerIds, scores, connected, shownIndices, shownImages);
+    }
+}
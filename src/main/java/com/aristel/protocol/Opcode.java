@@ -0,0 +1,37 @@
+package com.aristel.protocol;
+
+// One-byte opcodes of the binary protocol. Anything without its own opcode travels as TEXT.
+public final class Opcode {
+    public static final int TEXT = 0;
+    public static final int FLIP = 1;
+    public static final int HIDE = 2;
+    public static final int MATCH = 3;
+    public static final int TURN = 4;
+    public static final int SCORES = 5;
+    public static final int GAME_INIT = 6;
+    public static final int GAME_START = 7;
+    // [seq varint][inner opcode][inner payload]: a room event numbered for RESUME.
+    public static final int SEQUENCED = 8;
+    // The whole game in one frame; see GameSnapshot for the field layout.
+    public static final int GAME_SNAPSHOT = 9;
+
+    public static final int CLICK = 16;
+
+    private Opcode() {}
+
+    public static String name(int opcode) {
+        switch (opcode) {
+            case FLIP: return "FLIP";
+            case HIDE: return "HIDE";
+            case MATCH: return "MATCH";
+            case TURN: return "TURN";
+            case SCORES: return "SCORES";
+            case GAME_INIT: return "GAME_INIT";
+            case GAME_START: return "GAME_START";
+            case SEQUENCED: return "EV";
+            case GAME_SNAPSHOT: return "GAME_SNAPSHOT";
+            case CLICK: return "CLICK";
+            default: return "TEXT";
+        }
+    }
+}
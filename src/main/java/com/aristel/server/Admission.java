@@ -0,0 +1,185 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Admission control: the server refuses work it cannot take on rather than running out of
+// memory, and keeps the games already under way responsive. The accept loops ask
+// admitConnection() before building a handler, which only enforces maxConnections: a
+// refused connection gets one ERROR:SERVER_FULL line and is closed. Overload is handled per
+// command instead, so a dropped player can always reconnect and RESUME: CREATE, QUICK_MATCH
+// and the Matchmaker ask roomRefusal(), and are refused with ERROR:SERVER_FULL,
+// ERROR:OVERLOADED or ERROR:TOO_MANY_ROOMS. JOIN, SPECTATE, RESUME and moves in running
+// games are never refused here.
+//
+// Once a second the housekeeping thread samples the old generation after the last GC, and
+// how long its last probe waited on the room timer thread that drives turn timing. Past
+// -Dmemory.server.overloadHeapPercent or overloadLagMs the server is overloaded until both
+// fall well back below. Every reapIntervalMs the reaper, also on the housekeeping thread,
+// removes rooms nobody can use any more; see GameRoom.reapIfIdle.
+final class Admission {
+    static final String SERVER_FULL = "ERROR:SERVER_FULL";
+    static final String OVERLOADED = "ERROR:OVERLOADED";
+    static final String TOO_MANY_ROOMS = "ERROR:TOO_MANY_ROOMS";
+
+    private static final long SAMPLE_MS = 1000;
+    private static final AtomicInteger connections = new AtomicInteger();
+    private static final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private static volatile boolean overloaded = false;
+    // Timer-thread probe: sent by sample(), cleared by the probe once it has run.
+    private static volatile boolean probePending = false;
+    private static volatile long probeSentAt;
+    private static volatile long probeLagNanos;
+
+    static {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            // Only old-generation pools support both thresholds; a survivor space is often
+            // full right after a collection and says nothing about load.
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported()) {
+                heapPools.add(pool);
+            }
+        }
+    }
+
+    private Admission() {}
+
+    static void start() {
+        // The first room timer pays for loading its JFR event class; keep that out of the
+        // first sample so startup does not read as overload.
+        RoomScheduler.schedule(() -> {}, 0);
+        RoomScheduler.scheduleAtFixedRate(Admission::sample, SAMPLE_MS);
+        if (ServerConfig.REAP_INTERVAL_MS > 0) {
+            RoomScheduler.scheduleAtFixedRate(Admission::reap, ServerConfig.REAP_INTERVAL_MS);
+        }
+    }
+
+    // Counts the connection in and returns null, or returns the line to refuse it with.
+    static String admitConnection() {
+        int limit = ServerConfig.MAX_CONNECTIONS;
+        while (true) {
+            int current = connections.get();
+            if (limit > 0 && current >= limit) return SERVER_FULL;
+            if (connections.compareAndSet(current, current + 1)) return null;
+        }
+    }
+
+    // Called once for every admitted connection, when its handler closes.
+    static void connectionClosed() {
+        connections.decrementAndGet();
+    }
+
+    static int connectionCount() {
+        return connections.get();
+    }
+
+    static boolean overloaded() {
+        return overloaded;
+    }
+
+    // Null if a new room may be opened, else the error for it. The room limit is checked
+    // ahead of the insert, so concurrent CREATEs may overshoot it by a few.
+    static String roomRefusal() {
+        if (overloaded) return OVERLOADED;
+        int limit = ServerConfig.MAX_ROOMS;
+        if (limit > 0 && GameServer.roomCount() >= limit) return SERVER_FULL;
+        return null;
+    }
+
+    static String roomRefusal(ClientHandler creator) {
+        int limit = ServerConfig.MAX_ROOMS_PER_CONNECTION;
+        if (limit > 0 && creator.roomsCreated.get() >= limit) return TOO_MANY_ROOMS;
+        return roomRefusal();
+    }
+
+    static void refuse(Socket socket, String reason) {
+        Metrics.connectionRefused();
+        try (Socket s = socket) {
+            OutputStream out = s.getOutputStream();
+            out.write((reason + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        } catch (IOException e) {
+            // Gone already; nothing to tell it.
+        }
+    }
+
+    // channel is still in blocking mode, straight from accept().
+    static void refuse(SocketChannel channel, String reason) {
+        Metrics.connectionRefused();
+        try (SocketChannel c = channel) {
+            c.write(ByteBuffer.wrap((reason + "\n").getBytes(StandardCharsets.US_ASCII)));
+        } catch (IOException e) {
+            // Gone already; nothing to tell it.
+        }
+    }
+
+    private static void sample() {
+        long lagMs = TimeUnit.NANOSECONDS.toMillis(timerLag());
+        int heapPercent = heapPercentAfterGc();
+
+        int heapLimit = ServerConfig.OVERLOAD_HEAP_PERCENT;
+        long lagLimit = ServerConfig.OVERLOAD_LAG_MS;
+        if (!overloaded) {
+            if ((heapLimit > 0 && heapPercent >= heapLimit) || (lagLimit > 0 && lagMs >= lagLimit)) {
+                overloaded = true;
+                Log.warn("Overloaded (heap after GC " + heapPercent + "%, timer lag " + lagMs
+                        + " ms): refusing new rooms");
+            }
+        } else if ((heapLimit <= 0 || heapPercent < heapLimit - 10) && (lagLimit <= 0 || lagMs < lagLimit / 2)) {
+            overloaded = false;
+            Log.info("Load back to normal (heap after GC " + heapPercent + "%, timer lag " + lagMs + " ms)");
+        }
+    }
+
+    // How long the room timer thread took to get to the last probe. A probe still waiting
+    // counts as late as it is by now, so a wedged timer thread reads as overloaded too.
+    private static long timerLag() {
+        long now = System.nanoTime();
+        if (probePending) return now - probeSentAt;
+        long lag = probeLagNanos;
+        probeSentAt = now;
+        probePending = true;
+        RoomScheduler.schedule(() -> {
+            probeLagNanos = System.nanoTime() - probeSentAt;
+            probePending = false;
+        }, 0);
+        return lag;
+    }
+
+    // How full the old generation was after its last collection.
+    private static int heapPercentAfterGc() {
+        int percent = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null || usage.getMax() <= 0) continue;
+            percent = Math.max(percent, (int) (usage.getUsed() * 100 / usage.getMax()));
+        }
+        return percent;
+    }
+
+    private static void reap() {
+        long now = System.nanoTime();
+        int reaped = 0;
+        for (GameRoom room : GameServer.getRooms()) {
+            if (room.reapIfIdle(now)) reaped++;
+        }
+        if (reaped > 0) {
+            Metrics.roomsReaped(reaped);
+            Log.info("Reaped " + reaped + " idle rooms");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.aristel.server;
+
+import com.aristel.protocol.CardCatalogue;
+
+import java.util.SplittableRandom;
+
+// One game's cards as flat primitives: the image id of every position, a long-word mask of
+// the matched positions and the number of groups still face down, so a turn never allocates
+// and game over is a single comparison. Not thread-safe; GameRoom uses it under its lock.
+public final class Board {
+    private final short[] cards;
+    private final long[] matched;
+    private final int matchSize;
+    private int remainingGroups;
+
+    // Deals totalCards / matchSize distinct images matchSize times each, capped at imageCount
+    // groups. Images come from the lowest ids that cover the groups, so a small board only
+    // uses the plain faces of the CardCatalogue.
+    public Board(int totalCards, int matchSize, int imageCount, SplittableRandom random) {
+        int groups = Math.min(totalCards / matchSize, imageCount);
+        int pool = Math.min(Math.max(groups, CardCatalogue.FACES), imageCount);
+        this.matchSize = matchSize;
+        cards = new short[groups * matchSize];
+        matched = new long[(cards.length + 63) >>> 6];
+        remainingGroups = groups;
+
+        short[] images = new short[pool];
+        for (int i = 0; i < images.length; i++) images[i] = (short) i;
+        // Only the first `groups` slots of a partial shuffle are needed.
+        for (int i = 0; i < groups; i++) swap(images, i, i + random.nextInt(images.length - i));
+
+        for (int i = 0; i < cards.length; i++) cards[i] = images[i / matchSize];
+        for (int i = cards.length - 1; i > 0; i--) swap(cards, i, random.nextInt(i + 1));
+    }
+
+    // Rebuilds a board from the cards and matched mask the journal saved.
+    Board(short[] cards, long[] matched, int matchSize) {
+        this.cards = cards;
+        this.matched = matched;
+        this.matchSize = matchSize;
+        int matchedCards = 0;
+        for (long word : matched) matchedCards += Long.bitCount(word);
+        remainingGroups = (cards.length - matchedCards) / matchSize;
+    }
+
+    public int size() {
+        return cards.length;
+    }
+
+    public int matchSize() {
+        return matchSize;
+    }
+
+    public int imageAt(int index) {
+        return cards[index];
+    }
+
+    public boolean isMatched(int index) {
+        return (matched[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Marks the first matchSize positions of group as one found set.
+    public void markMatched(int[] group) {
+        for (int i = 0; i < matchSize; i++) {
+            int index = group[i];
+            matched[index >>> 6] |= 1L << index;
+        }
+        remainingGroups--;
+    }
+
+    // The matched mask as it is now; image ids never change after the deal, so the copy
+    // plus imageAt() is enough to describe the board from another thread.
+    public long[] copyMatched() {
+        return matched.clone();
+    }
+
+    public short[] copyCards() {
+        return cards.clone();
+    }
+
+    public int remainingGroups() {
+        return remainingGroups;
+    }
+
+    public boolean isCleared() {
+        return remainingGroups == 0;
+    }
+
+    private static void swap(short[] a, int i, int j) {
+        short t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
@@ -1,123 +1,375 @@
 package com.aristel.server;
 
-import java.io.*;
+import com.aristel.log.Log;
+import com.aristel.protocol.BinaryCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class ClientHandler extends Thread {
+public final class ClientHandler implements Runnable {
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
-    private GameRoom currentRoom;
+    private Transport transport;
+    private final CommandParser parser = new CommandParser();
+    private final FrameDecoder decoder = new FrameDecoder(this);
+    private final RateLimiter limiter = new RateLimiter();
+    // Also set by the Matchmaker's tick, hence volatile.
+    private volatile GameRoom currentRoom;
+    private GameRoom watchedRoom;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    // Rooms this connection created that still exist; GameServer keeps it up to date.
+    final AtomicInteger roomsCreated = new AtomicInteger();
     public int playerID;
     public int score = 0;
     public boolean isActive = true;
+    // Set by GameRoom when this connection takes a seat; RESUME hands it to a new connection.
+    String sessionToken;
+    // Set by RESUMABLE: room events arrive wrapped with their sequence number.
+    volatile boolean resumable = false;
 
     public ClientHandler(Socket socket) {
         this.socket = socket;
     }
 
+    // The accept loop has already counted a connection in with Admission.
+    public ClientHandler(Transport transport) {
+        this.transport = transport;
+    }
+
     @Override
     public void run() {
         try {
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                String[] parts = inputLine.split(":");
-                String command = parts[0];
-
-                if (command.equals("CREATE")) {
-                    String roomId = parts[1];
-                    String password = (parts.length > 2) ? parts[2] : "";
-                    
-                    boolean created = GameServer.createRoom(roomId, password);
-
-                    if (created) {
-                        sendMessage("MSG:Room '" + roomId + "' created.");
-                        
-                        GameRoom room = GameServer.findRoom(roomId);
-                        if (room.addPlayer(this)) {
-                            this.currentRoom = room;
-                            sendMessage("JOINED:" + this.playerID);
-                            sendMessage("MSG:You are the Room Master!");
-                        }
-                    } else {
-                        sendMessage("ERROR:ROOM_EXIST");
-                    }
-                } else if (command.equals("GET_ROOMS")) {
-                    sendMessage(GameServer.getRoomList());
-                } else if (command.equals("JOIN")) {
-                    String roomId = parts[1];
-                    String inputPwd = (parts.length > 2) ? parts[2] : "";
-                    
+            transport = new SocketTransport(socket);
+            InputStream in = socket.getInputStream();
+            byte[] chunk = new byte[4096];
+
+            int count;
+            while ((count = in.read(chunk)) != -1) {
+                if (!decoder.feed(chunk, count)) {
+                    Log.warn("Dropping client: line too long");
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            Log.debug("Player disconnected");
+        } finally {
+            disconnect();
+        }
+    }
+
+    // Returns false if the peer sent an oversized line or frame.
+    public boolean receive(ByteBuffer buf) {
+        return decoder.feed(buf);
+    }
+
+    public void handleLine(byte[] line, int offset, int length) {
+        if (closed.get()) return;
+        JfrEvents.CommandHandled event = new JfrEvents.CommandHandled();
+        event.begin();
+        long start = System.nanoTime();
+        parser.reset(line, offset, length);
+        Command command = parser.command();
+        if (!admit(command, start)) return;
+
+        switch (command) {
+            case CLICK:
+                click(parser.nextInt(-1));
+                break;
+            case CREATE: {
+                String roomId = parser.nextString();
+                String password = parser.nextString();
+                int boardCards = parser.nextInt(0);
+                int matchSize = parser.nextInt(2);
+                if (roomId.isEmpty() || leaveQueue()) break;
+                // ';' and ',' separate rooms and fields in ROOM_LIST and the lobby feed.
+                if (roomId.indexOf(';') >= 0 || roomId.indexOf(',') >= 0) {
+                    sendMessage("ERROR:INVALID_NAME");
+                    break;
+                }
+
+                String refusal = Admission.roomRefusal(this);
+                if (refusal != null) {
+                    Metrics.roomRefused();
+                    sendMessage(refusal);
+                    break;
+                }
+                boolean created = GameServer.createRoom(roomId, password, boardCards, matchSize, this);
+
+                if (created) {
+                    sendMessage("MSG:Room '" + roomId + "' created.");
+
                     GameRoom room = GameServer.findRoom(roomId);
-                    
-                    if (room == null) {
-                        sendMessage("ERROR:ROOM_NOT_EXIST");
+                    if (boardCards > 0 && room.getBoardCards() != boardCards) {
+                        sendMessage("MSG:The board holds " + room.getBoardCards() + " cards.");
+                    }
+                    if (room.addPlayer(this)) {
+                        stopWatching();
+                        this.currentRoom = room;
+                        LobbyFeed.unsubscribe(this);
+                        sendMessage("JOINED:" + this.playerID + ":" + sessionToken);
+                        sendMessage("MSG:You are the Room Master!");
+                    }
+                } else {
+                    sendMessage("ERROR:ROOM_EXIST");
+                }
+                break;
+            }
+            case GET_ROOMS:
+                send(GameServer.getRoomList());
+                break;
+            case JOIN: {
+                String roomId = parser.nextString();
+                String inputPwd = parser.nextString();
+                if (leaveQueue()) break;
+                
+                GameRoom room = GameServer.findRoom(roomId);
+                
+                if (room == null) {
+                    sendMessage("ERROR:ROOM_NOT_EXIST");
+                } else {
+                    if (room.getRoomStatus().equals("IN GAME")) {
+                        sendMessage("ERROR:IN_GAME");
+                    } else if (room.getPlayerCount() >= GameRoom.MAX_PLAYERS) {
+                        sendMessage("ERROR:FULL");
                     } else {
-                        if (room.getRoomStatus().equals("IN GAME")) {
-                            sendMessage("ERROR:IN_GAME");
-                        } else if (room.getPlayerCount() >= 4) {
-                            sendMessage("ERROR:FULL");
+                        if (room.isPrivate() && !room.checkPassword(inputPwd)) {
+                            sendMessage("ERROR:WRONG_PASSWORD");
                         } else {
-                            if (room.isPrivate() && !room.checkPassword(inputPwd)) {
-                                sendMessage("ERROR:WRONG_PASSWORD");
-                            } else {
-                                if (room.addPlayer(this)) {
-                                    this.currentRoom = room;
-                                    sendMessage("JOINED:" + this.playerID);
-                                }
+                            if (room.addPlayer(this)) {
+                                stopWatching();
+                                this.currentRoom = room;
+                                LobbyFeed.unsubscribe(this);
+                                sendMessage("JOINED:" + this.playerID + ":" + sessionToken);
                             }
                         }
                     }
-                } else if (command.equals("KICK")) {
-                    try {
-                        int targetId = Integer.parseInt(parts[1]);
-                        if (currentRoom != null) {
-                            currentRoom.kickPlayer(this, targetId);
-                        }
-                    } catch (Exception e) { System.out.println("Kick error"); }
-                } else if (command.equals("START")) {
-                    if (currentRoom != null) {
-                        currentRoom.startGame(this); 
-                    }
-                } else if (command.equals("CLICK")) {
-                    if (currentRoom != null) {
-                        int cardIndex = Integer.parseInt(parts[1]);
-                        currentRoom.processTurn(this.playerID, cardIndex);
-                    }
-                } else if (command.equals("LEAVE")) {
-                    if (currentRoom != null) {
-                        currentRoom.removePlayer(this);
-                        currentRoom = null;
-                        sendMessage("LEFT_ROOM");
-                    }
-                } else if (command.equals("GET_STATE")) {
-                    if (currentRoom != null) {
-                        currentRoom.sendStateToPlayer(this);
-                    }
-                } else if (command.equals("GET_GAME_STATE")) {
-                    if (currentRoom != null) {
+                }
+                break;
+            }
+            case KICK: {
+                int targetId = parser.nextInt(-1);
+                if (targetId < 0) {
+                    Log.debug("Kick error");
+                } else if (currentRoom != null) {
+                    currentRoom.kickPlayer(this, targetId);
+                }
+                break;
+            }
+            case START:
+                if (currentRoom != null) {
+                    currentRoom.startGame(this); 
+                }
+                break;
+            case LEAVE:
+                if (currentRoom != null) {
+                    currentRoom.removePlayer(this);
+                    currentRoom = null;
+                    sendMessage("LEFT_ROOM");
+                } else if (watchedRoom != null) {
+                    watchedRoom.removeSpectator(this);
+                    watchedRoom = null;
+                    sendMessage("LEFT_ROOM");
+                }
+                break;
+            case GET_STATE:
+                if (currentRoom != null) {
+                    currentRoom.sendStateToPlayer(this);
+                }
+                break;
+            case GET_GAME_STATE: {
+                boolean snapshot = parser.nextString().equals("SNAPSHOT");
+                if (currentRoom != null) {
+                    if (snapshot) {
+                        currentRoom.sendSnapshot(this);
+                    } else {
                         currentRoom.sendGameState(this);
                     }
-                } else if (command.equals("RESET_GAME")) {
-                    if (currentRoom != null) {
-                        currentRoom.stopGame();
+                } else if (watchedRoom != null) {
+                    watchedRoom.sendGameStateToSpectator(this, snapshot);
+                }
+                break;
+            }
+            case RESET_GAME:
+                if (currentRoom != null) {
+                    currentRoom.stopGame();
+                }
+                break;
+            case SEARCH_ROOMS:
+                sendMessage(GameServer.searchRooms(RoomCatalogue.Query.parse(parser)).toMessage());
+                break;
+            case SPECTATE: {
+                String roomId = parser.nextString();
+                String inputPwd = parser.nextString();
+                if (leaveQueue()) break;
+
+                GameRoom room = GameServer.findRoom(roomId);
+                if (room == null) {
+                    sendMessage("ERROR:ROOM_NOT_EXIST");
+                } else if (room.isPrivate() && !room.checkPassword(inputPwd)) {
+                    sendMessage("ERROR:WRONG_PASSWORD");
+                } else {
+                    // Detach first; the relay applies the removal before the new attach.
+                    stopWatching();
+                    if (!room.getRoomStatus().equals("IN GAME")) {
+                        sendMessage("ERROR:NOT_IN_GAME");
+                    } else if (!room.addSpectator(this)) {
+                        sendMessage("ERROR:SPECTATORS_FULL");
+                    } else {
+                        watchedRoom = room;
+                        LobbyFeed.unsubscribe(this);
                     }
                 }
+                break;
             }
-        } catch (IOException e) {
-            System.out.println("Player disconnected");
-        } finally {
-            try { 
-                if (currentRoom != null) currentRoom.removePlayer(this);
-                socket.close(); 
-            } catch (IOException e) {}
+            case RESUMABLE:
+                resumable = true;
+                break;
+            case RESUME: {
+                String token = parser.nextString();
+                int lastSeq = parser.nextInt(0);
+                GameRoom room = GameServer.findSession(token);
+                if (leaveQueue() || room == null || !room.resumePlayer(this, token, lastSeq)) {
+                    sendMessage("ERROR:RESUME_FAILED");
+                    break;
+                }
+                stopWatching();
+                currentRoom = room;
+                LobbyFeed.unsubscribe(this);
+                break;
+            }
+            case QUICK_MATCH: {
+                int players = parser.nextInt(2);
+                if (currentRoom != null) break;
+                String refusal = Admission.roomRefusal();
+                if (refusal != null) {
+                    Metrics.roomRefused();
+                    sendMessage(refusal);
+                    break;
+                }
+                stopWatching();
+                Matchmaker.enqueue(this, players);
+                break;
+            }
+            case CANCEL_MATCH:
+                if (Matchmaker.cancel(this)) sendMessage("MATCH_CANCELLED");
+                break;
+            case SUBSCRIBE_LOBBY:
+                if (currentRoom == null) LobbyFeed.subscribe(this);
+                break;
+            case UNSUBSCRIBE_LOBBY:
+                LobbyFeed.unsubscribe(this);
+                break;
+            case HELLO:
+                if (parser.nextString().equals("BIN1")) {
+                    transport.upgrade(Frame.handshake(BinaryCodec.HANDSHAKE));
+                    decoder.switchToBinary();
+                } else {
+                    sendMessage(BinaryCodec.HANDSHAKE_DECLINED);
+                }
+                break;
+            default:
+                break;
+        }
+        Metrics.commandHandled(command, start);
+        commitCommand(event, command);
+    }
+
+    // A binary CLICK frame, which skips handleLine.
+    public void handleClick(int cardIndex) {
+        if (closed.get()) return;
+        JfrEvents.CommandHandled event = new JfrEvents.CommandHandled();
+        event.begin();
+        long start = System.nanoTime();
+        if (!admit(Command.CLICK, start)) return;
+        click(cardIndex);
+        Metrics.commandHandled(Command.CLICK, start);
+        commitCommand(event, Command.CLICK);
+    }
+
+    // Charges the command to this connection's budget. A rejected command is answered once
+    // per run of rejections with the shared ERROR:RATE_LIMITED frame; a flood is disconnected.
+    private boolean admit(Command command, long now) {
+        int verdict = limiter.check(command, now);
+        if (verdict == RateLimiter.ALLOW) return true;
+        Metrics.rateLimited();
+        if (verdict == RateLimiter.DISCONNECT) {
+            Metrics.floodDisconnect();
+            Log.warn("Dropping client: command flood");
+            disconnect();
+        } else if (verdict == RateLimiter.REJECT) {
+            send(RateLimiter.REJECTED);
+        }
+        return false;
+    }
+
+    private void commitCommand(JfrEvents.CommandHandled event, Command command) {
+        if (!event.shouldCommit()) return;
+        GameRoom room = currentRoom;
+        event.command = command.name();
+        event.playerId = (room != null) ? playerID : -1;
+        event.roomId = (room != null) ? room.getRoomId() : null;
+        event.commit();
+    }
+
+    private void click(int cardIndex) {
+        if (currentRoom != null) {
+            currentRoom.processTurn(this.playerID, cardIndex);
+        }
+    }
+
+    public void disconnect() {
+        if (!closed.compareAndSet(false, true)) return;
+        LobbyFeed.unsubscribe(this);
+        stopWatching();
+        Matchmaker.cancel(this);
+        if (currentRoom != null) currentRoom.removePlayer(this);
+        release();
+    }
+
+    // Closes the connection and hands its slot back to Admission. Seats restored from the
+    // journal have neither socket nor transport and were never counted.
+    private void release() {
+        if (transport != null) transport.close();
+        if (socket != null || transport != null) Admission.connectionClosed();
+    }
+
+    // Called by GameRoom.openQuickMatch, on the Matchmaker's tick, once this player is seated.
+    void quickMatched(GameRoom room) {
+        currentRoom = room;
+        LobbyFeed.unsubscribe(this);
+        sendMessage("MATCHED:" + room.getRoomId() + ":" + playerID + ":" + sessionToken);
+    }
+
+    // Drops any QUICK_MATCH request. Returns true if this connection is (now) seated in a
+    // room, in which case the caller's command does not apply.
+    private boolean leaveQueue() {
+        Matchmaker.cancel(this);
+        return currentRoom != null;
+    }
+
+    // Called when a RESUME on another connection has taken over this player's seat.
+    void evict() {
+        if (!closed.compareAndSet(false, true)) return;
+        LobbyFeed.unsubscribe(this);
+        stopWatching();
+        release();
+    }
+
+    private void stopWatching() {
+        if (watchedRoom != null) {
+            watchedRoom.removeSpectator(this);
+            watchedRoom = null;
         }
     }
 
     public void sendMessage(String msg) {
-        if (isActive && out != null) out.println(msg);
+        send(Frame.of(msg));
+    }
+
+    public void send(Frame frame) {
+        if (isActive && transport != null) transport.send(frame);
     }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.aristel.server;
+
+import java.nio.charset.StandardCharsets;
+
+public enum Command {
+    // Declared hottest first; lookup() tries candidates of the same length in this order.
+    CLICK,
+    GET_ROOMS,
+    GET_STATE,
+    GET_GAME_STATE,
+    CREATE,
+    JOIN,
+    LEAVE,
+    START,
+    KICK,
+    RESET_GAME,
+    HELLO,
+    SEARCH_ROOMS,
+    SPECTATE,
+    RESUMABLE,
+    RESUME,
+    QUICK_MATCH,
+    CANCEL_MATCH,
+    SUBSCRIBE_LOBBY,
+    UNSUBSCRIBE_LOBBY,
+    UNKNOWN;
+
+    private static final Command[][] BY_LENGTH = buildTable();
+
+    private final byte[] token = name().getBytes(StandardCharsets.US_ASCII);
+
+    private static Command[][] buildTable() {
+        int maxLength = 0;
+        for (Command c : values()) maxLength = Math.max(maxLength, c.token.length);
+
+        Command[][] table = new Command[maxLength + 1][0];
+        for (Command c : values()) {
+            if (c == UNKNOWN) continue;
+            Command[] row = table[c.token.length];
+            Command[] grown = new Command[row.length + 1];
+            System.arraycopy(row, 0, grown, 0, row.length);
+            grown[row.length] = c;
+            table[c.token.length] = grown;
+        }
+        return table;
+    }
+
+    public static Command lookup(byte[] buf, int start, int end) {
+        int length = end - start;
+        if (length <= 0 || length >= BY_LENGTH.length) return UNKNOWN;
+
+        for (Command c : BY_LENGTH[length]) {
+            byte[] token = c.token;
+            int i = 0;
+            while (i < length && buf[start + i] == token[i]) i++;
+            if (i == length) return c;
+        }
+        return UNKNOWN;
+    }
+}
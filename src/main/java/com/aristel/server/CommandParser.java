@@ -0,0 +1,73 @@
+package com.aristel.server;
+
+import java.nio.charset.StandardCharsets;
+
+// Cursor over one raw PREFIX:FIELD:FIELD line. Only nextString() allocates.
+// Inside a field, "\:" stands for a literal colon and "\\" for a backslash.
+public final class CommandParser {
+    private byte[] buf;
+    private int end;
+    private int pos;
+    private byte[] scratch = new byte[64];
+
+    public void reset(byte[] buf, int offset, int length) {
+        this.buf = buf;
+        this.end = offset + length;
+        this.pos = offset;
+    }
+
+    public Command command() {
+        int start = pos;
+        while (pos < end && buf[pos] != ':') pos++;
+        Command command = Command.lookup(buf, start, pos);
+        if (pos < end) pos++;
+        return command;
+    }
+
+    // Parses the next field as a decimal int, or returns fallback if it is not one.
+    public int nextInt(int fallback) {
+        boolean negative = pos < end && buf[pos] == '-';
+        if (negative) pos++;
+
+        int start = pos;
+        long value = 0;
+        while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+            value = value * 10 + (buf[pos] - '0');
+            if (value > Integer.MAX_VALUE) break;
+            pos++;
+        }
+
+        boolean valid = pos > start && (pos == end || buf[pos] == ':');
+        skipField();
+        if (!valid) return fallback;
+        return (int) (negative ? -value : value);
+    }
+
+    public String nextString() {
+        int length = 0;
+        while (pos < end && buf[pos] != ':') {
+            byte b = buf[pos++];
+            if (b == '\\' && pos < end) b = buf[pos++];
+            if (length == scratch.length) {
+                byte[] grown = new byte[scratch.length * 2];
+                System.arraycopy(scratch, 0, grown, 0, length);
+                scratch = grown;
+            }
+            scratch[length++] = b;
+        }
+        if (pos < end) pos++;
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public static String escape(String field) {
+        return field.replace("\\", "\\\\").replace(":", "\\:");
+    }
+
+    private void skipField() {
+        while (pos < end && buf[pos] != ':') {
+            if (buf[pos] == '\\') pos++;
+            pos++;
+        }
+        if (pos < end) pos++;
+    }
+}
@@ -0,0 +1,105 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class EventLoop extends Thread {
+    private final Selector selector;
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final Queue<NioTransport> pendingFlushes = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(16 * 1024);
+
+    public EventLoop(int index) throws IOException {
+        super("event-loop-" + index);
+        this.selector = Selector.open();
+    }
+
+    public void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    void requestFlush(NioTransport transport) {
+        pendingFlushes.add(transport);
+        // Writes queued from this loop are flushed at the end of the current pass.
+        if (Thread.currentThread() != this) selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+                processKeys();
+                registerPending();
+                flushPending();
+            } catch (IOException e) {
+                Log.error("Event loop error", e);
+            }
+        }
+    }
+
+    private void processKeys() {
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            NioTransport transport = (NioTransport) key.attachment();
+
+            if (!key.isValid()) {
+                transport.fail();
+                continue;
+            }
+            if (key.isReadable()) read(transport);
+            if (key.isValid() && key.isWritable()) transport.flush();
+        }
+    }
+
+    private void read(NioTransport transport) {
+        readBuffer.clear();
+        int n;
+        try {
+            n = transport.channel().read(readBuffer);
+        } catch (IOException e) {
+            n = -1;
+        }
+
+        if (n < 0) {
+            Log.debug("Player disconnected");
+            transport.fail();
+            return;
+        }
+        readBuffer.flip();
+        transport.decode(readBuffer);
+    }
+
+    private void registerPending() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                NioTransport transport = new NioTransport(channel, this);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, transport);
+                transport.attach(key, new ClientHandler(transport));
+            } catch (ClosedChannelException e) {
+                // Closed before it got a handler, so nothing else gives back its admission.
+                Admission.connectionClosed();
+            }
+        }
+    }
+
+    private void flushPending() {
+        NioTransport transport;
+        while ((transport = pendingFlushes.poll()) != null) {
+            transport.flush();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.aristel.server;
+
+import com.aristel.protocol.BinaryCodec;
+import com.aristel.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+// A message encoded at most once per protocol and shared by every recipient.
+public final class Frame {
+    private final int opcode;
+    private volatile int[] fields;
+    private final Supplier<int[]> fieldSource;
+    private final boolean textOnly;
+    private final Frame inner;
+    private volatile String text;
+    private volatile byte[] textBytes;
+    private volatile byte[] binaryBytes;
+
+    private Frame(int opcode, int[] fields, String text, boolean textOnly) {
+        this(opcode, fields, text, textOnly, null);
+    }
+
+    private Frame(int opcode, int[] fields, String text, boolean textOnly, Frame inner) {
+        this.opcode = opcode;
+        this.fields = fields;
+        this.fieldSource = null;
+        this.text = text;
+        this.textOnly = textOnly;
+        this.inner = inner;
+    }
+
+    private Frame(int opcode, Supplier<int[]> fieldSource) {
+        this.opcode = opcode;
+        this.fieldSource = fieldSource;
+        this.textOnly = false;
+        this.inner = null;
+    }
+
+    public static Frame of(String text) {
+        return new Frame(Opcode.TEXT, null, text, false);
+    }
+
+    // A game event with its own binary opcode; the text form is only built if a text client needs it.
+    public static Frame event(int opcode, int... fields) {
+        return new Frame(opcode, fields, null, false);
+    }
+
+    // An event whose fields are only computed by the first thread that encodes it, so a room
+    // can queue it in order under its lock and leave the work to the writer.
+    static Frame lazyEvent(int opcode, Supplier<int[]> fieldSource) {
+        return new Frame(opcode, fieldSource);
+    }
+
+    // A room event numbered seq, for connections that asked for RESUMABLE delivery.
+    // Text form is EV:<seq>:<inner line>.
+    static Frame sequenced(int seq, Frame inner) {
+        return new Frame(Opcode.SEQUENCED, new int[] { seq }, null, false, inner);
+    }
+
+    // A line that is written as text even on a connection that has switched to binary.
+    static Frame handshake(String text) {
+        return new Frame(Opcode.TEXT, null, text, true);
+    }
+
+    public String text() {
+        String t = text;
+        if (t == null) {
+            t = (inner != null) ? "EV:" + fields()[0] + ":" + inner.text() : BinaryCodec.toText(opcode, fields());
+            text = t;
+        }
+        return t;
+    }
+
+    private int[] fields() {
+        int[] f = fields;
+        if (f == null) {
+            f = fieldSource.get();
+            fields = f;
+        }
+        return f;
+    }
+
+    public String prefix() {
+        if (opcode != Opcode.TEXT) return Opcode.name(opcode);
+        String t = text();
+        int colon = t.indexOf(':');
+        return (colon < 0) ? t : t.substring(0, colon);
+    }
+
+    // The prefix of the message itself, looking through a sequenced wrapper.
+    String kind() {
+        return (inner != null) ? inner.prefix() : prefix();
+    }
+
+    boolean isSequenced() {
+        return inner != null;
+    }
+
+    public ByteBuffer buffer(boolean binary) {
+        return ByteBuffer.wrap(bytes(binary)).asReadOnlyBuffer();
+    }
+
+    byte[] bytes(boolean binary) {
+        if (binary && !textOnly) {
+            byte[] b = binaryBytes;
+            if (b == null) {
+                if (inner != null) {
+                    b = BinaryCodec.encodeSequenced(fields()[0], inner.bytes(true));
+                } else {
+                    b = (opcode == Opcode.TEXT) ? BinaryCodec.encodeText(text()) : BinaryCodec.encode(opcode, fields());
+                }
+                binaryBytes = b;
+            }
+            return b;
+        }
+        byte[] b = textBytes;
+        if (b == null) {
+            b = (text() + "\n").getBytes(StandardCharsets.UTF_8);
+            textBytes = b;
+        }
+        return b;
+    }
+}
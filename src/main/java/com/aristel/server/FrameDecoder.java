@@ -0,0 +1,106 @@
+package com.aristel.server;
+
+import com.aristel.protocol.BinaryCodec;
+import com.aristel.protocol.Opcode;
+
+import java.nio.ByteBuffer;
+
+// Splits an inbound byte stream into newline-terminated lines, or into length-prefixed
+// binary frames once the connection has been upgraded, without copying them into Strings.
+public final class FrameDecoder {
+    private final ClientHandler handler;
+    private byte[] line = new byte[128];
+    private int length = 0;
+    private boolean binary = false;
+    private int frameLength = -1;
+    private int lengthValue = 0;
+    private int lengthShift = 0;
+
+    public FrameDecoder(ClientHandler handler) {
+        this.handler = handler;
+    }
+
+    // Takes effect from the next inbound byte, which may be in the chunk being fed.
+    public void switchToBinary() {
+        binary = true;
+    }
+
+    // Returns false once a line or frame grows past ServerConfig.MAX_LINE_LENGTH.
+    public boolean feed(byte[] chunk, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!accept(chunk[i])) return false;
+        }
+        return true;
+    }
+
+    public boolean feed(ByteBuffer buf) {
+        while (buf.hasRemaining()) {
+            if (!accept(buf.get())) return false;
+        }
+        return true;
+    }
+
+    private boolean accept(byte b) {
+        return binary ? acceptBinary(b) : acceptText(b);
+    }
+
+    private boolean acceptText(byte b) {
+        if (b == '\n') {
+            int end = length;
+            if (end > 0 && line[end - 1] == '\r') end--;
+            length = 0;
+            handler.handleLine(line, 0, end);
+            return true;
+        }
+        return append(b);
+    }
+
+    private boolean acceptBinary(byte b) {
+        if (frameLength < 0) {
+            lengthValue |= (b & 0x7F) << lengthShift;
+            lengthShift += 7;
+            if ((b & 0x80) != 0) return lengthShift < 28;
+
+            frameLength = lengthValue;
+            lengthValue = 0;
+            lengthShift = 0;
+            return frameLength > 0 && frameLength <= ServerConfig.MAX_LINE_LENGTH;
+        }
+
+        if (!append(b)) return false;
+        if (length == frameLength) {
+            int end = length;
+            length = 0;
+            frameLength = -1;
+            dispatch(end);
+        }
+        return true;
+    }
+
+    private void dispatch(int end) {
+        switch (line[0]) {
+            case Opcode.TEXT:
+                handler.handleLine(line, 1, end - 1);
+                break;
+            case Opcode.CLICK: {
+                // A truncated or malformed index drops the frame.
+                int cardIndex = BinaryCodec.readVarint(line, 1, end);
+                if (cardIndex >= 0) handler.handleClick(cardIndex);
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private boolean append(byte b) {
+        if (length == line.length) {
+            if (length >= ServerConfig.MAX_LINE_LENGTH) return false;
+            byte[] grown = new byte[Math.min(line.length * 2, ServerConfig.MAX_LINE_LENGTH)];
+            System.arraycopy(line, 0, grown, 0, length);
+            line = grown;
+        }
+        line[length++] = b;
+        return true;
+    }
+}
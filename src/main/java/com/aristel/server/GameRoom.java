@@ -1,23 +1,115 @@
 package com.aristel.server;
 
+import com.aristel.log.Log;
+import com.aristel.protocol.CardCatalogue;
+import com.aristel.protocol.GameSnapshot;
+import com.aristel.protocol.Opcode;
+
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class GameRoom {
+    public static final int MAX_PLAYERS = 4;
+
     private String roomId;
     private List<ClientHandler> players = new ArrayList<>();
     private ClientHandler roomMaster; 
     private int nextPlayerId = 0;
-    private List<Integer> board = new ArrayList<>(); 
-    private boolean[] matchedCards; 
+    private Board board;
+    private final SplittableRandom random = new SplittableRandom();
     private boolean isGameRunning = false;
     private int currentPlayerIndex = 0; 
-    private int firstCardIndex = -1; 
+    // Cards flipped so far this turn; a turn ends once matchSize of them show the same image.
+    private final int[] selected;
+    private int selectedCount = 0;
+    // A failed set stays face up until finishMismatch hides it.
+    private int[] mismatched = new int[0];
+    private final int boardCards;
+    private final int matchSize;
     private boolean isWaitingForDelay = false;
     private String password = "";
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<ScheduledFuture<?>> timers = ConcurrentHashMap.newKeySet();
+    private final SpectatorRelay spectators = new SpectatorRelay();
+    // Every membership change is followed by broadcastRoomState(), which refreshes this.
+    private Frame roomStateFrame;
+    // Number of the last broadcast; RESUME replays from here or falls back to a snapshot.
+    private int eventSeq = 0;
+    private final ReplayBuffer replay = new ReplayBuffer(ServerConfig.REPLAY_BUFFER_SIZE);
+    // System.nanoTime() when the running game started, for the GameEnded event.
+    private long gameStartedAt;
+    // System.nanoTime() of the last broadcast, or of creation; the reaper goes by it.
+    private long lastActivity = System.nanoTime();
+    // The connection whose CREATE opened this room, if any; see Admission.
+    ClientHandler creator;
 
     public GameRoom(String id, String pwd) {
+        this(id, pwd, 0, 2);
+    }
+
+    // boardCards of 0 deals ten cards per player, as the classic game does. Any other size is
+    // clamped to what a Board can deal: whole sets, at most maxBoardCards and at most one set
+    // per CardCatalogue image.
+    public GameRoom(String id, String pwd, int boardCards, int matchSize) {
         this.roomId = id;
         this.password = (pwd == null) ? "" : pwd;
+        this.matchSize = Math.max(2, Math.min(matchSize, ServerConfig.MAX_MATCH_SIZE));
+        int maxCards = Math.min(ServerConfig.MAX_BOARD_CARDS, CardCatalogue.SIZE * this.matchSize);
+        int cards = Math.max(this.matchSize * 2, Math.min(boardCards, maxCards));
+        this.boardCards = (boardCards <= 0) ? 0 : cards - cards % this.matchSize;
+        this.selected = new int[this.matchSize];
+    }
+
+    // Registers the room with GameServer. The lock is taken first so that a JOIN racing in
+    // cannot be journaled ahead of ROOM_CREATED.
+    boolean open() {
+        lockRoom();
+        try {
+            if (!GameServer.registerRoom(this)) return false;
+            Journal.roomCreated(roomId, password, boardCards, matchSize);
+            publishListing();
+
+            JfrEvents.RoomCreated event = new JfrEvents.RoomCreated();
+            if (event.shouldCommit()) {
+                event.roomId = roomId;
+                event.isPrivate = isPrivate();
+                event.boardCards = boardCards;
+                event.matchSize = matchSize;
+                event.commit();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Registers a quick-match room with batch already seated and the game started. The lock
+    // is held from registration on, so a JOIN for the new name finds the game running.
+    boolean openQuickMatch(ClientHandler[] batch) {
+        lockRoom();
+        try {
+            if (!open()) return false;
+            for (ClientHandler p : batch) {
+                if (addPlayer(p)) p.quickMatched(this);
+            }
+            startGame(roomMaster);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMatchSize() {
+        return matchSize;
+    }
+
+    // The fixed board size after clamping, or 0 for ten cards per player.
+    public int getBoardCards() {
+        return boardCards;
     }
 
     public boolean isPrivate() {
@@ -28,157 +120,201 @@ public class GameRoom {
         return password.equals(input);
     }
 
-    public synchronized boolean addPlayer(ClientHandler p) {
-        if (players.size() >= 4 || isGameRunning) return false;
+    public boolean addPlayer(ClientHandler p) {
+        lockRoom();
+        try {
+            if (players.size() >= MAX_PLAYERS || isGameRunning) return false;
         
-        p.playerID = nextPlayerId++;
-        players.add(p);
+            p.playerID = nextPlayerId++;
+            p.sessionToken = GameServer.openSession(this);
+            players.add(p);
+            Journal.playerJoined(roomId, p.playerID, p.sessionToken);
 
-        if (players.size() == 1) {
-            roomMaster = p;
-        }
+            if (players.size() == 1) {
+                roomMaster = p;
+            }
 
-        broadcastRoomState();
-        broadcast("MSG:Player " + p.playerID + " joined the destiny.");
+            broadcastRoomState();
+            broadcast("MSG:Player " + p.playerID + " joined the destiny.");
         
-        return true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void removePlayer(ClientHandler p) {
-        if (isGameRunning) {
-            p.isActive = false;
-            broadcast("PLAYER_DISCONNECTED:" + p.playerID);
-            broadcast("MSG:Player " + p.playerID + "'s connection was severed by fate.");
+    public void removePlayer(ClientHandler p) {
+        lockRoom();
+        try {
+            // Already gone, or its seat was taken over by RESUME.
+            if (!players.contains(p)) return;
+
+            if (isGameRunning) {
+                p.isActive = false;
+                Journal.playerDisconnected(roomId, p.playerID);
+                broadcast("PLAYER_DISCONNECTED:" + p.playerID);
+                broadcast("MSG:Player " + p.playerID + "'s connection was severed by fate.");
             
-            if (players.get(currentPlayerIndex) == p) {
-                advanceTurn();
-            }
+                if (players.get(currentPlayerIndex) == p) {
+                    advanceTurn();
+                }
             
-            boolean anyoneLeft = players.stream().anyMatch(pl -> pl.isActive);
-            if (!anyoneLeft) {
-                isGameRunning = false;
-                GameServer.removeRoom(this.roomId);
+                boolean anyoneLeft = players.stream().anyMatch(pl -> pl.isActive);
+                if (!anyoneLeft) {
+                    isGameRunning = false;
+                    gameEnded("ABANDONED");
+                    GameServer.removeRoom(this.roomId, "every player disconnected");
+                }
+                return;
             }
-            return;
-        }
-
-        players.remove(p);
-
-        if (players.isEmpty()) {
-            GameServer.removeRoom(this.roomId);
-        } else {   
-            if (p == roomMaster) {
-                int prevRoomMaster = roomMaster.playerID;
-                roomMaster = players.get(0);
-                int curRoomMaster = roomMaster.playerID;
-                broadcast("MSG:The Overlord(Player " + prevRoomMaster + ") tries to futilely escape, Player " + curRoomMaster + " ascend to the throne.");
-            } 
-
-            broadcast("MSG:Player " + p.playerID + " meets their fated demise.");
 
-            broadcastRoomState();
-
-            if (isGameRunning && players.size() < 2) {
-                isGameRunning = false;
-                broadcast("MSG:Destiny stand brave as there is not enough players to challenge it.");
+            players.remove(p);
+            GameServer.closeSession(p.sessionToken);
+            Journal.playerLeft(roomId, p.playerID);
+
+            if (players.isEmpty()) {
+                GameServer.removeRoom(this.roomId, "empty");
+            } else {   
+                if (p == roomMaster) {
+                    int prevRoomMaster = roomMaster.playerID;
+                    roomMaster = players.get(0);
+                    int curRoomMaster = roomMaster.playerID;
+                    broadcast("MSG:The Overlord(Player " + prevRoomMaster + ") tries to futilely escape, Player " + curRoomMaster + " ascend to the throne.");
+                } 
+
+                broadcast("MSG:Player " + p.playerID + " meets their fated demise.");
+
+                broadcastRoomState();
+
+                if (isGameRunning && players.size() < 2) {
+                    isGameRunning = false;
+                    gameEnded("NOT_ENOUGH_PLAYERS");
+                    publishListing();
+                    broadcast("MSG:Destiny stand brave as there is not enough players to challenge it.");
+                }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
-    public synchronized void kickPlayer(ClientHandler requester, int targetId) {
-        if (requester != roomMaster) return;
+    public void kickPlayer(ClientHandler requester, int targetId) {
+        lockRoom();
+        try {
+            if (requester != roomMaster) return;
         
-        ClientHandler victim = null;
-        for (ClientHandler p : players) {
-            if (p.playerID == targetId) {
-                victim = p;
-                break;
+            ClientHandler victim = null;
+            for (ClientHandler p : players) {
+                if (p.playerID == targetId) {
+                    victim = p;
+                    break;
+                }
             }
-        }
-        if (victim == null || victim == roomMaster) return; 
+            if (victim == null || victim == roomMaster) return; 
 
-        victim.sendMessage("KICKED");
-        broadcast("MSG:The Overlord has banished Player " + targetId + " from partaking in this destiny.");
-        players.remove(victim);
+            victim.sendMessage("KICKED");
+            broadcast("MSG:The Overlord has banished Player " + targetId + " from partaking in this destiny.");
+            players.remove(victim);
+            GameServer.closeSession(victim.sessionToken);
+            Journal.playerLeft(roomId, victim.playerID);
 
-        broadcastRoomState();
-    }
-
-    public synchronized void startGame(ClientHandler requester) {
-        if (requester != roomMaster) {
-            requester.sendMessage("ERROR:Only the Room Master (Player " + roomMaster.playerID + ") can start the game.");
-            return;
+            broadcastRoomState();
+        } finally {
+            lock.unlock();
         }
+    }
 
-        if (players.size() < 2) {
-            broadcast("MSG:Need at least 2 players to start.");
-            return;
-        }
+    public void startGame(ClientHandler requester) {
+        lockRoom();
+        try {
+            if (requester != roomMaster) {
+                requester.sendMessage("ERROR:Only the Room Master (Player " + roomMaster.playerID + ") can start the game.");
+                return;
+            }
 
-        int totalCards = players.size() * 10;
-        matchedCards = new boolean[totalCards];
-        generateBoard(totalCards);
+            if (players.size() < 2) {
+                broadcast("MSG:Need at least 2 players to start.");
+                return;
+            }
 
-        isGameRunning = true;
-        Random rand = new Random();
-        currentPlayerIndex = rand.nextInt(players.size());
-        
-        broadcast("GAME_START:" + totalCards);
-        broadcast("MSG:Randomly selected Player " + players.get(currentPlayerIndex).playerID + " to start!");
-        broadcast("TURN:" + players.get(currentPlayerIndex).playerID);
-    }
-    
-    private void generateBoard(int totalCards) {
-        board.clear();
-        List<Integer> availableImageIds = new ArrayList<>();
-        for (int i = 0; i < 20; i++) {
-            availableImageIds.add(i);
-        }
-        Collections.shuffle(availableImageIds);
+            int totalCards = (boardCards > 0) ? boardCards : players.size() * 10;
+            board = new Board(totalCards, matchSize, CardCatalogue.SIZE, random);
+            if (Log.debug()) Log.debug("Room " + roomId + " board generated.");
 
-        for (int i = 0; i < totalCards / 2; i++) {
-            if (i < availableImageIds.size()) {
-                int selectedId = availableImageIds.get(i);
+            isGameRunning = true;
+            gameStartedAt = System.nanoTime();
+            publishListing();
+            currentPlayerIndex = random.nextInt(players.size());
+            Journal.gameStarted(roomId, currentPlayerIndex, board.copyCards());
         
-                board.add(selectedId);
-                board.add(selectedId);
+            broadcast(Frame.event(Opcode.GAME_START, board.size(), matchSize));
+            broadcast("MSG:Randomly selected Player " + players.get(currentPlayerIndex).playerID + " to start!");
+            broadcast(Frame.event(Opcode.TURN, players.get(currentPlayerIndex).playerID));
+
+            JfrEvents.GameStarted event = new JfrEvents.GameStarted();
+            if (event.shouldCommit()) {
+                event.roomId = roomId;
+                event.players = players.size();
+                event.cards = board.size();
+                event.matchSize = matchSize;
+                event.commit();
             }
+        } finally {
+            lock.unlock();
         }
-
-        Collections.shuffle(board);
-        System.out.println("Room " + roomId + " board generated.");
     }
-
-    public synchronized void processTurn(int playerID, int cardIndex) {
-        if (!isGameRunning || isWaitingForDelay) return;
-        if (players.get(currentPlayerIndex).playerID != playerID) return; 
+    
+    public void processTurn(int playerID, int cardIndex) {
+        JfrEvents.Turn event = new JfrEvents.Turn();
+        event.begin();
+        String outcome = "IGNORED";
+        lockRoom();
+        try {
+            if (!isGameRunning || isWaitingForDelay) return;
+            if (players.get(currentPlayerIndex).playerID != playerID) return; 
         
-        if (cardIndex < 0 || cardIndex >= board.size() || matchedCards[cardIndex]) return;
-        if (cardIndex == firstCardIndex) return; 
+            if (cardIndex < 0 || cardIndex >= board.size() || board.isMatched(cardIndex)) return;
+            for (int i = 0; i < selectedCount; i++) {
+                if (selected[i] == cardIndex) return;
+            }
 
-        int imageId = board.get(cardIndex);
-        broadcast("FLIP:" + cardIndex + ":" + imageId);
+            int imageId = board.imageAt(cardIndex);
+            broadcast(Frame.event(Opcode.FLIP, cardIndex, imageId));
+            selected[selectedCount++] = cardIndex;
+            outcome = "FLIP";
 
-        if (firstCardIndex == -1) {
-            firstCardIndex = cardIndex;
-        } else {
-            int firstImageId = board.get(firstCardIndex);
-            
-            if (firstImageId == imageId) {
-                matchedCards[firstCardIndex] = true;
-                matchedCards[cardIndex] = true;
+            if (imageId != board.imageAt(selected[0])) {
+                // The set is broken as soon as one card differs; hide everything flipped this turn.
+                outcome = "MISMATCH";
+                isWaitingForDelay = true;
+                int[] shown = Arrays.copyOf(selected, selectedCount);
+                selectedCount = 0;
+                mismatched = shown;
+                schedule(() -> finishMismatch(shown), ServerConfig.MISMATCH_DELAY_MS);
+            } else if (selectedCount == matchSize) {
+                board.markMatched(selected);
+                selectedCount = 0;
                 ClientHandler p = players.get(currentPlayerIndex);
                 p.score++;
-                broadcast("MATCH:" + p.playerID + ":" + p.score);
+                Journal.matched(roomId, p.playerID, p.score, selected, matchSize);
+                broadcast(Frame.event(Opcode.MATCH, p.playerID, p.score));
                 broadcast("MSG:Player " + p.playerID + " found a match and KEEPS the turn!");
-                firstCardIndex = -1;
-                checkGameOver();
-                if (isGameRunning) broadcast("TURN:" + players.get(currentPlayerIndex).playerID);
-            } else {
-                isWaitingForDelay = true;
-                MistakeTimer timer = new MistakeTimer(firstCardIndex, cardIndex);
-                firstCardIndex = -1; 
-                timer.start();
+                outcome = "MATCH";
+                if (board.isCleared()) {
+                    broadcast("GAME_OVER");
+                    outcome = "GAME_OVER";
+                    gameEnded("CLEARED");
+                }
+                if (isGameRunning) broadcast(Frame.event(Opcode.TURN, players.get(currentPlayerIndex).playerID));
+            }
+        } finally {
+            lock.unlock();
+            if (event.shouldCommit()) {
+                event.roomId = roomId;
+                event.playerId = playerID;
+                event.cardIndex = cardIndex;
+                event.outcome = outcome;
+                event.commit();
             }
         }
     }
@@ -189,57 +325,130 @@ public class GameRoom {
             currentPlayerIndex = (currentPlayerIndex + 1) % players.size();
             if (currentPlayerIndex == originalIndex && !players.get(currentPlayerIndex).isActive) break;
         } while (!players.get(currentPlayerIndex).isActive);
+        Journal.turn(roomId, currentPlayerIndex);
         
-        broadcast("TURN:" + players.get(currentPlayerIndex).playerID);
-    }
-
-    public synchronized void finishMismatch(int c1, int c2) {
-        broadcast("HIDE:" + c1 + ":" + c2);
-        isWaitingForDelay = false;
-        advanceTurn();
+        broadcast(Frame.event(Opcode.TURN, players.get(currentPlayerIndex).playerID));
     }
 
-    private void checkGameOver() {
-        boolean allMatched = true;
-        for (boolean b : matchedCards) {
-            if (!b) { allMatched = false; break; }
-        }
-        
-        if (allMatched) {
-            broadcast("GAME_OVER");
+    public void finishMismatch(int[] cards) {
+        lockRoom();
+        try {
+            if (!isWaitingForDelay) return;
+            broadcast(Frame.event(Opcode.HIDE, cards));
+            mismatched = new int[0];
+            isWaitingForDelay = false;
+            advanceTurn();
+        } finally {
+            lock.unlock();
         }
     }
 
-    public synchronized void stopGame() {
-        if (!isGameRunning) return; 
+    public void stopGame() {
+        lockRoom();
+        try {
+            if (!isGameRunning) return; 
 
-        isGameRunning = false; 
+            isGameRunning = false; 
+            if (!board.isCleared()) gameEnded("STOPPED");
+            cancelTimers();
+            Journal.gameStopped(roomId);
         
-        players.removeIf(p -> !p.isActive);
+            Iterator<ClientHandler> it = players.iterator();
+            while (it.hasNext()) {
+                ClientHandler p = it.next();
+                if (!p.isActive) {
+                    it.remove();
+                    GameServer.closeSession(p.sessionToken);
+                }
+            }
         
-        if (players.isEmpty()) {
-            GameServer.removeRoom(this.roomId);
-            return;
+            if (players.isEmpty()) {
+                GameServer.removeRoom(this.roomId, "empty");
+                return;
+            }
+
+            board = null;
+            selectedCount = 0;
+            mismatched = new int[0];
+            isWaitingForDelay = false;
+
+            for (ClientHandler p : players) {
+                p.score = 0;
+            }
+
+            broadcast("BACK_TO_ROOM"); 
+            // Spectators only watch games; the client returns them to the lobby.
+            spectators.close(Frame.of("SPECTATE_ENDED"));
+            broadcastRoomState(); 
+        } finally {
+            lock.unlock();
         }
+    }
 
-        board.clear();
-        matchedCards = null;
-        firstCardIndex = -1;
-        isWaitingForDelay = false;
+    // Takes the room lock. Only a contended acquire is timed, as a RoomLockWait event.
+    private void lockRoom() {
+        if (lock.tryLock()) return;
+        JfrEvents.RoomLockWait event = new JfrEvents.RoomLockWait();
+        event.begin();
+        lock.lock();
+        if (event.shouldCommit()) {
+            event.roomId = roomId;
+            event.commit();
+        }
+    }
 
-        for (ClientHandler p : players) {
-            p.score = 0;
+    private void gameEnded(String reason) {
+        JfrEvents.GameEnded event = new JfrEvents.GameEnded();
+        if (event.shouldCommit()) {
+            event.roomId = roomId;
+            event.reason = reason;
+            event.length = System.nanoTime() - gameStartedAt;
+            event.commit();
         }
+    }
 
-        broadcast("BACK_TO_ROOM"); 
-        broadcastRoomState(); 
+    private void schedule(Runnable task, long delayMs) {
+        timers.removeIf(Future::isDone);
+        timers.add(RoomScheduler.schedule(task, delayMs));
+    }
+
+    public void cancelTimers() {
+        for (ScheduledFuture<?> timer : timers) timer.cancel(false);
+        timers.clear();
     }
 
     private void broadcast(String msg) {
-        for (ClientHandler p : players) p.sendMessage(msg);
+        broadcast(Frame.of(msg));
+    }
+
+    // Every broadcast is a numbered room event; RESUMABLE connections get the numbered form.
+    private void broadcast(Frame frame) {
+        JfrEvents.Broadcast event = new JfrEvents.Broadcast();
+        event.begin();
+        long start = System.nanoTime();
+        lastActivity = start;
+        int seq = ++eventSeq;
+        Frame sequenced = Frame.sequenced(seq, frame);
+        replay.add(seq, sequenced);
+        for (ClientHandler p : players) p.send(p.resumable ? sequenced : frame);
+        spectators.publish(frame);
+        Metrics.broadcastDone(start);
+        if (event.shouldCommit()) {
+            event.roomId = roomId;
+            event.message = frame.prefix();
+            event.players = players.size();
+            event.spectators = spectators.count();
+            event.commit();
+        }
     }
 
     private void broadcastRoomState() {
+        roomStateFrame = buildRoomState();
+        broadcast(roomStateFrame);
+        publishListing();
+    }
+
+    private Frame buildRoomState() {
         StringBuilder sb = new StringBuilder("ROOM_STATE:");
         sb.append(roomId).append(":");
         sb.append(roomMaster.playerID).append(":");
@@ -248,37 +457,298 @@ public class GameRoom {
         for (ClientHandler p : players) {
             sb.append(p.playerID).append(",");
         }
-        
-        broadcast(sb.toString());
+        return Frame.of(sb.toString());
     }
 
     public void sendStateToPlayer(ClientHandler p) {
-        StringBuilder sb = new StringBuilder("ROOM_STATE:");
-        sb.append(roomId).append(":");
-        sb.append(roomMaster.playerID).append(":");
-        sb.append(players.size()).append(":");
-        
-        for (ClientHandler player : players) {
-            sb.append(player.playerID).append(",");
+        lockRoom();
+        try {
+            if (roomStateFrame == null) roomStateFrame = buildRoomState();
+            p.send(roomStateFrame);
+        } finally {
+            lock.unlock();
         }
-        p.sendMessage(sb.toString());
     }
 
+    // Legacy GET_GAME_STATE: GAME_INIT, SCORES and TURN as three frames.
     public void sendGameState(ClientHandler p) {
-        int totalCards = players.size() * 10;
-        p.sendMessage("GAME_INIT:" + totalCards);
+        lockRoom();
+        try {
+            if (board == null) return;
+            for (Frame frame : gameStateFrames()) p.send(frame);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // GET_GAME_STATE:SNAPSHOT, answered with a single GAME_SNAPSHOT frame.
+    public void sendSnapshot(ClientHandler p) {
+        lockRoom();
+        try {
+            if (board != null) p.send(snapshotFrame());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called under the lock, which is only held for the copies; the frame's fields, including
+    // the image of every matched card, are built later by the thread that first encodes it.
+    private Frame snapshotFrame() {
+        Board b = board;
+        long[] matched = b.copyMatched();
+        int turn = players.get(currentPlayerIndex).playerID;
+
+        int[] faceUp = new int[(selectedCount + mismatched.length) * 2];
+        int n = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            faceUp[n++] = selected[i];
+            faceUp[n++] = b.imageAt(selected[i]);
+        }
+        for (int index : mismatched) {
+            faceUp[n++] = index;
+            faceUp[n++] = b.imageAt(index);
+        }
+
+        int[] seats = new int[players.size() * 3];
+        for (int i = 0; i < players.size(); i++) {
+            ClientHandler pl = players.get(i);
+            seats[i * 3] = pl.playerID;
+            seats[i * 3 + 1] = pl.score;
+            seats[i * 3 + 2] = pl.isActive ? 1 : 0;
+        }
 
-        StringBuilder sb = new StringBuilder("SCORES:");
-        for (ClientHandler player : players) {
-            sb.append(player.playerID).append("=").append(player.score).append(",");
+        return Frame.lazyEvent(Opcode.GAME_SNAPSHOT, () -> {
+            int[] words = new int[(b.size() + 31) >>> 5];
+            int matchedCount = 0;
+            for (int i = 0; i < words.length; i++) {
+                words[i] = (int) (matched[i >>> 1] >>> ((i & 1) << 5));
+                matchedCount += Integer.bitCount(words[i]);
+            }
+            int[] images = new int[matchedCount];
+            int m = 0;
+            for (int i = 0; i < b.size(); i++) {
+                if ((matched[i >>> 6] & (1L << i)) != 0) images[m++] = b.imageAt(i);
+            }
+            return GameSnapshot.encode(b.size(), b.matchSize(), turn, seats, words, images, faceUp);
+        });
+    }
+
+    private Frame[] gameStateFrames() {
+        int[] scores = new int[players.size() * 2];
+        for (int i = 0; i < players.size(); i++) {
+            scores[i * 2] = players.get(i).playerID;
+            scores[i * 2 + 1] = players.get(i).score;
         }
-        p.sendMessage(sb.toString());
-        p.sendMessage("TURN:" + players.get(currentPlayerIndex).playerID);
+        return new Frame[] {
+            Frame.event(Opcode.GAME_INIT, board.size(), matchSize),
+            Frame.event(Opcode.SCORES, scores),
+            Frame.event(Opcode.TURN, players.get(currentPlayerIndex).playerID)
+        };
+    }
+
+    // Spectators can only attach to a running game. Returns false if the game is not running
+    // or already has ServerConfig.MAX_SPECTATORS watchers.
+    public boolean addSpectator(ClientHandler s) {
+        lockRoom();
+        try {
+            if (!isGameRunning) return false;
+            return spectators.add(s, Frame.of("SPECTATING:" + roomId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void removeSpectator(ClientHandler s) {
+        spectators.remove(s);
     }
 
-    public String getRoomListData() {
-        String type = isPrivate() ? "PRIVATE" : "PUBLIC";
-        return roomId + "," + getMasterName() + "," + getPlayerCount() + "," + getRoomStatus() + "," + type;
+    // Answers GET_GAME_STATE for a spectator through its relay, so the reply cannot overtake
+    // or fall behind the events around it.
+    public void sendGameStateToSpectator(ClientHandler s, boolean snapshot) {
+        lockRoom();
+        try {
+            if (board == null) return;
+            if (snapshot) {
+                spectators.sendTo(s, snapshotFrame());
+            } else {
+                spectators.sendTo(s, gameStateFrames());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Gives the seat held under token to a new connection. A client that is still within the
+    // replay buffer gets the events it missed, anyone further behind gets a snapshot.
+    public boolean resumePlayer(ClientHandler p, String token, int lastSeq) {
+        lockRoom();
+        try {
+            if (!isGameRunning) return false;
+
+            int seat = -1;
+            for (int i = 0; i < players.size(); i++) {
+                if (token.equals(players.get(i).sessionToken)) {
+                    seat = i;
+                    break;
+                }
+            }
+            if (seat < 0) return false;
+
+            ClientHandler old = players.get(seat);
+            p.playerID = old.playerID;
+            p.score = old.score;
+            p.sessionToken = token;
+            p.isActive = true;
+            players.set(seat, p);
+            if (roomMaster == old) roomMaster = p;
+            // A half-open socket may not have noticed the drop yet.
+            if (old.isActive) old.evict();
+            Journal.playerResumed(roomId, p.playerID);
+
+            if (lastSeq > 0 && replay.covers(lastSeq)) {
+                p.sendMessage("RESUMED:" + p.playerID + ":" + lastSeq + ":REPLAY");
+                for (int seq = lastSeq + 1; seq <= eventSeq; seq++) p.send(replay.get(seq));
+            } else {
+                p.sendMessage("RESUMED:" + p.playerID + ":" + eventSeq + ":SNAPSHOT");
+                p.send(snapshotFrame());
+            }
+
+            broadcast("PLAYER_RECONNECTED:" + p.playerID);
+            broadcast("MSG:Player " + p.playerID + " has returned from beyond the veil.");
+            // After a restart every seat starts out empty, including the one whose turn it is.
+            if (!players.get(currentPlayerIndex).isActive) advanceTurn();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A running game rebuilt from the journal. Every seat is a disconnected placeholder that
+    // keeps its session token until its player sends RESUME.
+    static GameRoom restore(RoomImage image) {
+        GameRoom room = new GameRoom(image.roomId, image.password, image.boardCards, image.matchSize);
+        room.nextPlayerId = image.nextPlayerId;
+        for (RoomImage.Seat seat : image.seats) {
+            ClientHandler p = new ClientHandler((Transport) null);
+            p.playerID = seat.playerId;
+            p.score = seat.score;
+            p.sessionToken = seat.token;
+            p.isActive = false;
+            room.players.add(p);
+            if (seat.playerId == image.masterId) room.roomMaster = p;
+        }
+        if (room.roomMaster == null) room.roomMaster = room.players.get(0);
+        room.board = new Board(image.cards, image.matched, room.matchSize);
+        room.currentPlayerIndex = Math.min(image.currentPlayerIndex, room.players.size() - 1);
+        room.isGameRunning = true;
+        room.gameStartedAt = System.nanoTime();
+        return room;
+    }
+
+    // Called by GameServer once a restored room is registered.
+    void restored() {
+        lockRoom();
+        try {
+            for (ClientHandler p : players) GameServer.registerSession(p.sessionToken, this);
+            roomStateFrame = buildRoomState();
+            publishListing();
+            schedule(this::expireIfAbandoned, ServerConfig.RECOVERY_GRACE_MS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expireIfAbandoned() {
+        lockRoom();
+        try {
+            if (!isGameRunning || players.stream().anyMatch(pl -> pl.isActive)) return;
+            isGameRunning = false;
+            gameEnded("EXPIRED");
+            GameServer.removeRoom(roomId, "restored game expired, nobody resumed");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called by Admission's reaper. Removes the room if it has been empty for a reap interval,
+    // or if none of its seated players has been connected for the recovery grace period.
+    // A room with a connected player is never reaped. Runs under the lock so the journal
+    // sees the removal after the room's last event.
+    boolean reapIfIdle(long now) {
+        lockRoom();
+        try {
+            if (GameServer.findRoom(roomId) != this) return false;
+            long idleMs = TimeUnit.NANOSECONDS.toMillis(now - lastActivity);
+            String reason;
+            if (players.isEmpty()) {
+                if (idleMs < ServerConfig.REAP_INTERVAL_MS) return false;
+                reason = "reaped while empty";
+            } else if (players.stream().noneMatch(pl -> pl.isActive)) {
+                if (idleMs < ServerConfig.RECOVERY_GRACE_MS) return false;
+                reason = "reaped, no player came back";
+            } else {
+                return false;
+            }
+
+            if (isGameRunning) {
+                isGameRunning = false;
+                gameEnded("ABANDONED");
+            }
+            GameServer.removeRoom(roomId, reason);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes this room's full state to the journal as part of a checkpoint.
+    void journalSnapshot() {
+        lockRoom();
+        try {
+            if (GameServer.findRoom(roomId) != this) return;
+
+            RoomImage image = new RoomImage();
+            image.roomId = roomId;
+            image.password = password;
+            image.boardCards = boardCards;
+            image.matchSize = matchSize;
+            image.nextPlayerId = nextPlayerId;
+            image.masterId = (roomMaster != null) ? roomMaster.playerID : -1;
+            for (ClientHandler p : players) {
+                RoomImage.Seat seat = new RoomImage.Seat();
+                seat.playerId = p.playerID;
+                seat.score = p.score;
+                seat.token = p.sessionToken;
+                seat.active = p.isActive;
+                image.seats.add(seat);
+            }
+            image.running = isGameRunning;
+            if (isGameRunning) {
+                image.currentPlayerIndex = currentPlayerIndex;
+                image.cards = board.copyCards();
+                image.matched = board.copyMatched();
+            }
+            Journal.snapshot(image);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void closeSessions() {
+        for (ClientHandler p : players) GameServer.closeSession(p.sessionToken);
+    }
+
+    void closeSpectators() {
+        spectators.close(Frame.of("SPECTATE_ENDED"));
+    }
+
+    public RoomListing getListing() {
+        return new RoomListing(roomId, getMasterName(), getPlayerCount(), getRoomStatus(), isPrivate());
+    }
+
+    // Called under the lock after anything the lobby shows has changed.
+    void publishListing() {
+        GameServer.updateListing(this, getListing());
     }
 
     public String getRoomStatus() {
@@ -296,14 +766,4 @@ public class GameRoom {
     public String getMasterName() {
         return (roomMaster != null) ? "Player " + roomMaster.playerID : "Unknown";
     }
-
-    private class MistakeTimer extends Thread {
-        int card1, card2;
-        public MistakeTimer(int c1, int c2) { this.card1 = c1; this.card2 = c2; }
-        @Override
-        public void run() {
-            try { Thread.sleep(1000); } catch (InterruptedException e) {}
-            finishMismatch(card1, card2);
-        }
-    }
 }
\ No newline at end of file
@@ -1,51 +1,203 @@
 package com.aristel.server;
 
+import com.aristel.log.Log;
+
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class GameServer {
-    private static final int PORT = 12345;
-    private static Map<String, GameRoom> rooms = new HashMap<>();
+    private static final int PORT = ServerConfig.PORT;
+    private static final Map<String, GameRoom> rooms = new ConcurrentHashMap<>();
+    private static final Map<String, RoomListing> listings = new ConcurrentHashMap<>();
+    // Session token -> the room its player sits in, for RESUME after a dropped connection.
+    private static final Map<String, GameRoom> sessions = new ConcurrentHashMap<>();
+    private static final SecureRandom tokenRandom = new SecureRandom();
+    private static final RoomCatalogue catalogue = new RoomCatalogue();
+    private static final AtomicLong listVersion = new AtomicLong();
+    private static final Object listLock = new Object();
+    private static volatile RoomListSnapshot roomListSnapshot;
 
     public static void main(String[] args) {
-        System.out.println("Memory Game Server running on port " + PORT);
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+        Log.info("Memory Game Server running on port " + PORT + " (" + ServerConfig.MODE + " mode"
+                + (ServerConfig.SHARD_NAME.isEmpty() ? "" : ", shard " + ServerConfig.SHARD_NAME) + ")");
+        try {
+            Journal.recover();
+            Journal.start();
+            Metrics.start();
+            Admission.start();
+            if (ServerConfig.MODE.equals("nio")) {
+                new NioServer(PORT, ServerConfig.EVENT_LOOPS).run();
+            } else {
+                runBlocking();
+            }
+        } catch (IOException e) {
+            Log.error("Server stopped", e);
+        }
+    }
+
+    private static void runBlocking() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(PORT, ServerConfig.ACCEPT_BACKLOG)) {
             while (true) {
                 Socket clientSocket = serverSocket.accept();
+                String refusal = Admission.admitConnection();
+                if (refusal != null) {
+                    Admission.refuse(clientSocket, refusal);
+                    continue;
+                }
                 ClientHandler handler = new ClientHandler(clientSocket);
-                handler.start(); 
+                startThread(handler);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
-    public static synchronized boolean createRoom(String roomId, String password) {
-        if (rooms.containsKey(roomId)) {
+    // Client threads are virtual in "virtual" mode.
+    static Thread startThread(Runnable task) {
+        if (ServerConfig.VIRTUAL_THREADS) {
+            return Thread.ofVirtual().start(task);
+        }
+        return Thread.ofPlatform().start(task);
+    }
+
+    public static boolean createRoom(String roomId, String password) {
+        return createRoom(roomId, password, 0, 2);
+    }
+
+    public static boolean createRoom(String roomId, String password, int boardCards, int matchSize) {
+        return createRoom(roomId, password, boardCards, matchSize, null);
+    }
+
+    // creator, if given, has the room counted against its maxRoomsPerConnection while it exists.
+    static boolean createRoom(String roomId, String password, int boardCards, int matchSize, ClientHandler creator) {
+        GameRoom room = new GameRoom(roomId, password, boardCards, matchSize);
+        room.creator = creator;
+        if (creator != null) creator.roomsCreated.incrementAndGet();
+        if (!room.open()) {
+            if (creator != null) creator.roomsCreated.decrementAndGet();
             return false;
         }
-        rooms.put(roomId, new GameRoom(roomId, password));
-        System.out.println("Room Created: " + roomId + " (Private: " + !password.isEmpty() + ")");
+        Log.info("Room Created: " + roomId + " (Private: " + !password.isEmpty() + ")");
         return true;
     }
 
-    public static synchronized GameRoom findRoom(String roomId) {
+    static boolean registerRoom(GameRoom room) {
+        return rooms.putIfAbsent(room.getRoomId(), room) == null;
+    }
+
+    static void restoreRoom(GameRoom room) {
+        rooms.put(room.getRoomId(), room);
+        room.restored();
+        Log.info("Room Restored: " + room.getRoomId());
+    }
+
+    static Collection<GameRoom> getRooms() {
+        return rooms.values();
+    }
+
+    static int roomCount() {
+        return rooms.size();
+    }
+
+    public static GameRoom findRoom(String roomId) {
         return rooms.get(roomId);
     }
 
-    public static synchronized void removeRoom(String roomId) {
-        if (rooms.containsKey(roomId)) {
-            rooms.remove(roomId);
-            System.out.println("Room '" + roomId + "' is empty and has been deleted.");
+    // reason only goes to the log and the RoomRemoved event.
+    public static void removeRoom(String roomId, String reason) {
+        GameRoom removed = rooms.remove(roomId);
+        if (removed != null) {
+            listings.remove(roomId);
+            catalogue.remove(roomId);
+            listVersion.incrementAndGet();
+            LobbyFeed.roomRemoved(roomId);
+            removed.cancelTimers();
+            removed.closeSpectators();
+            removed.closeSessions();
+            if (removed.creator != null) removed.creator.roomsCreated.decrementAndGet();
+            Journal.roomRemoved(roomId);
+
+            JfrEvents.RoomRemoved event = new JfrEvents.RoomRemoved();
+            if (event.shouldCommit()) {
+                event.roomId = roomId;
+                event.reason = reason;
+                event.commit();
+            }
+            Log.info("Room '" + roomId + "' deleted: " + reason);
         }
     }
 
-    public static synchronized String getRoomList() {
-        StringBuilder sb = new StringBuilder("ROOM_LIST:");
-        for (GameRoom room : rooms.values()) {
-            sb.append(room.getRoomListData()).append(";");
+    static String openSession(GameRoom room) {
+        byte[] bytes = new byte[16];
+        tokenRandom.nextBytes(bytes);
+        StringBuilder token = new StringBuilder(ServerConfig.SHARD_NAME);
+        if (token.length() > 0) token.append('.');
+        for (byte b : bytes) token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        sessions.put(token.toString(), room);
+        return token.toString();
+    }
+
+    static void registerSession(String token, GameRoom room) {
+        if (token != null && !token.isEmpty()) sessions.put(token, room);
+    }
+
+    static void closeSession(String token) {
+        if (token != null) sessions.remove(token);
+    }
+
+    public static GameRoom findSession(String token) {
+        return sessions.get(token);
+    }
+
+    static void updateListing(GameRoom room, RoomListing listing) {
+        if (rooms.get(listing.roomId) != room) return;
+        listings.put(listing.roomId, listing);
+        catalogue.put(listing);
+        listVersion.incrementAndGet();
+        LobbyFeed.roomChanged(listing);
+    }
+
+    public static Collection<RoomListing> getListings() {
+        return listings.values();
+    }
+
+    public static RoomCatalogue.Page searchRooms(RoomCatalogue.Query query) {
+        return catalogue.search(query);
+    }
+
+    public static long getListVersion() {
+        return listVersion.get();
+    }
+
+    // Re-serialized only when some room changed since the last call; otherwise a cached frame.
+    public static Frame getRoomList() {
+        RoomListSnapshot snapshot = roomListSnapshot;
+        if (snapshot != null && snapshot.version == listVersion.get()) return snapshot.frame;
+
+        synchronized (listLock) {
+            long version = listVersion.get();
+            snapshot = roomListSnapshot;
+            if (snapshot != null && snapshot.version == version) return snapshot.frame;
+
+            StringBuilder sb = new StringBuilder("ROOM_LIST:");
+            for (RoomListing listing : listings.values()) {
+                sb.append(listing.entry).append(";");
+            }
+            snapshot = new RoomListSnapshot(version, Frame.of(sb.toString()));
+            roomListSnapshot = snapshot;
+            return snapshot.frame;
+        }
+    }
+
+    private static final class RoomListSnapshot {
+        final long version;
+        final Frame frame;
+
+        RoomListSnapshot(long version, Frame frame) {
+            this.version = version;
+            this.frame = frame;
         }
-        return sb.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.aristel.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+// Flight Recorder events for the server. They cost nothing until a recording enables them:
+// start one with -XX:StartFlightRecording=filename=server.jfr,settings=profile (or jcmd
+// <pid> JFR.start) and they show up next to the JDK's own GC, socket and thread events.
+// Duration events use begin()/commit(); fields are only filled in once shouldCommit() says
+// the event will be kept.
+final class JfrEvents {
+    private JfrEvents() {}
+
+    @Name("com.aristel.Command")
+    @Label("Command")
+    @Description("One client command, from parsing to the end of its handling")
+    @Category({ "Fate of Arcana", "Network" })
+    @StackTrace(false)
+    static final class CommandHandled extends Event {
+        @Label("Command")
+        String command;
+        @Label("Player")
+        int playerId;
+        @Label("Room")
+        String roomId;
+    }
+
+    @Name("com.aristel.ProcessTurn")
+    @Label("Process Turn")
+    @Description("GameRoom.processTurn for one CLICK, including the wait for the room lock")
+    @Category({ "Fate of Arcana", "Game" })
+    @StackTrace(false)
+    static final class Turn extends Event {
+        @Label("Room")
+        String roomId;
+        @Label("Player")
+        int playerId;
+        @Label("Card Index")
+        int cardIndex;
+        @Label("Outcome")
+        @Description("IGNORED, FLIP, MATCH, MISMATCH or GAME_OVER")
+        String outcome;
+    }
+
+    @Name("com.aristel.RoomLockWait")
+    @Label("Room Lock Wait")
+    @Description("Time a thread waited for a room lock another thread held")
+    @Category({ "Fate of Arcana", "Game" })
+    @Threshold("1 ms")
+    static final class RoomLockWait extends Event {
+        @Label("Room")
+        String roomId;
+    }
+
+    @Name("com.aristel.Broadcast")
+    @Label("Broadcast")
+    @Description("Handing one room event to every player and to the spectator relay")
+    @Category({ "Fate of Arcana", "Network" })
+    @StackTrace(false)
+    static final class Broadcast extends Event {
+        @Label("Room")
+        String roomId;
+        @Label("Message")
+        String message;
+        @Label("Players")
+        int players;
+        @Label("Spectators")
+        int spectators;
+    }
+
+    @Name("com.aristel.RoomTimer")
+    @Label("Room Timer")
+    @Description("A delayed room task, such as hiding a mismatch, running on the room scheduler")
+    @Category({ "Fate of Arcana", "Game" })
+    @StackTrace(false)
+    static final class RoomTimer extends Event {
+        @Label("Lateness")
+        @Description("How long after its due time the task started")
+        @Timespan(Timespan.NANOSECONDS)
+        long lateness;
+    }
+
+    @Name("com.aristel.RoomCreated")
+    @Label("Room Created")
+    @Category({ "Fate of Arcana", "Lifecycle" })
+    @StackTrace(false)
+    static final class RoomCreated extends Event {
+        @Label("Room")
+        String roomId;
+        @Label("Private")
+        boolean isPrivate;
+        @Label("Board Cards")
+        int boardCards;
+        @Label("Match Size")
+        int matchSize;
+    }
+
+    @Name("com.aristel.RoomRemoved")
+    @Label("Room Removed")
+    @Category({ "Fate of Arcana", "Lifecycle" })
+    @StackTrace(false)
+    static final class RoomRemoved extends Event {
+        @Label("Room")
+        String roomId;
+        @Label("Reason")
+        String reason;
+    }
+
+    @Name("com.aristel.GameStarted")
+    @Label("Game Started")
+    @Category({ "Fate of Arcana", "Lifecycle" })
+    @StackTrace(false)
+    static final class GameStarted extends Event {
+        @Label("Room")
+        String roomId;
+        @Label("Players")
+        int players;
+        @Label("Cards")
+        int cards;
+        @Label("Match Size")
+        int matchSize;
+    }
+
+    @Name("com.aristel.GameEnded")
+    @Label("Game Ended")
+    @Category({ "Fate of Arcana", "Lifecycle" })
+    @StackTrace(false)
+    static final class GameEnded extends Event {
+        @Label("Room")
+        String roomId;
+        @Label("Reason")
+        @Description("CLEARED, STOPPED, ABANDONED, NOT_ENOUGH_PLAYERS or EXPIRED")
+        String reason;
+        @Label("Game Length")
+        @Timespan(Timespan.NANOSECONDS)
+        long length;
+    }
+}
@@ -0,0 +1,352 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Optional append-only record of room lifecycle and game events, enabled by
+// -Dmemory.server.journalDir. Rooms encode a record while holding their lock and only add it
+// to a lock-free queue; the journal-writer thread appends everything queued to the current
+// memory-mapped JournalSegment and forces it to disk once per batch, so a CLICK never waits
+// on the disk. Every journalCheckpointMs the writer starts a new segment with a full
+// ROOM_SNAPSHOT of each room and deletes the segments before it.
+//
+// On startup recover() folds the segments back into RoomImages and restores every game that
+// was running. Its players come back as disconnected seats holding their old session tokens,
+// so clients pick up with RESUME.
+public final class Journal {
+    private static final int ROOM_CREATED = 1;
+    private static final int ROOM_REMOVED = 2;
+    private static final int PLAYER_JOINED = 3;
+    private static final int PLAYER_LEFT = 4;
+    private static final int PLAYER_DISCONNECTED = 5;
+    private static final int PLAYER_RESUMED = 6;
+    private static final int GAME_STARTED = 7;
+    private static final int MATCHED = 8;
+    private static final int TURN = 9;
+    private static final int GAME_STOPPED = 10;
+    private static final int ROOM_SNAPSHOT = 11;
+
+    private static final boolean ENABLED = !ServerConfig.JOURNAL_DIR.isEmpty();
+    private static final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    // Guards the segment fields; held by the writer thread and the shutdown hook.
+    private static final Object ioLock = new Object();
+    private static Path dir;
+    private static JournalSegment segment;
+    private static int nextIndex = 0;
+
+    private Journal() {}
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    static void roomCreated(String roomId, String password, int boardCards, int matchSize) {
+        if (!ENABLED) return;
+        append(ROOM_CREATED, roomId, out -> {
+            out.writeUTF(password);
+            out.writeInt(boardCards);
+            out.writeInt(matchSize);
+        });
+    }
+
+    static void roomRemoved(String roomId) {
+        if (!ENABLED) return;
+        append(ROOM_REMOVED, roomId, out -> {});
+    }
+
+    static void playerJoined(String roomId, int playerId, String token) {
+        if (!ENABLED) return;
+        append(PLAYER_JOINED, roomId, out -> {
+            out.writeInt(playerId);
+            out.writeUTF(token);
+        });
+    }
+
+    static void playerLeft(String roomId, int playerId) {
+        if (!ENABLED) return;
+        append(PLAYER_LEFT, roomId, out -> out.writeInt(playerId));
+    }
+
+    static void playerDisconnected(String roomId, int playerId) {
+        if (!ENABLED) return;
+        append(PLAYER_DISCONNECTED, roomId, out -> out.writeInt(playerId));
+    }
+
+    static void playerResumed(String roomId, int playerId) {
+        if (!ENABLED) return;
+        append(PLAYER_RESUMED, roomId, out -> out.writeInt(playerId));
+    }
+
+    static void gameStarted(String roomId, int currentPlayerIndex, short[] cards) {
+        if (!ENABLED) return;
+        append(GAME_STARTED, roomId, out -> {
+            out.writeInt(currentPlayerIndex);
+            RoomImage.writeCards(out, cards);
+        });
+    }
+
+    // indices holds at least count positions; only the first count are the found set.
+    static void matched(String roomId, int playerId, int score, int[] indices, int count) {
+        if (!ENABLED) return;
+        append(MATCHED, roomId, out -> {
+            out.writeInt(playerId);
+            out.writeInt(score);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) out.writeInt(indices[i]);
+        });
+    }
+
+    static void turn(String roomId, int currentPlayerIndex) {
+        if (!ENABLED) return;
+        append(TURN, roomId, out -> out.writeInt(currentPlayerIndex));
+    }
+
+    static void gameStopped(String roomId) {
+        if (!ENABLED) return;
+        append(GAME_STOPPED, roomId, out -> {});
+    }
+
+    static void snapshot(RoomImage image) {
+        if (!ENABLED) return;
+        append(ROOM_SNAPSHOT, image.roomId, image::write);
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void append(int type, String roomId, Body body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(type);
+            out.writeUTF(roomId);
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pending.add(bytes.toByteArray());
+    }
+
+    // Rebuilds the rooms that were mid-game when the last server stopped. Called once from
+    // GameServer.main before any connection is accepted.
+    public static void recover() throws IOException {
+        if (!ENABLED) return;
+        dir = Paths.get(ServerConfig.JOURNAL_DIR);
+        Files.createDirectories(dir);
+
+        Map<String, RoomImage> images = new LinkedHashMap<>();
+        int records = 0;
+        for (Path path : segmentPaths()) {
+            for (byte[] record : JournalSegment.read(path)) {
+                apply(images, record);
+                records++;
+            }
+            nextIndex = JournalSegment.indexOf(path) + 1;
+        }
+
+        int restored = 0;
+        for (RoomImage image : images.values()) {
+            if (!image.running || image.seats.isEmpty()) continue;
+            GameServer.restoreRoom(GameRoom.restore(image));
+            restored++;
+        }
+        Log.info("Journal: replayed " + records + " records, restored " + restored + " running games.");
+    }
+
+    private static void apply(Map<String, RoomImage> images, byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int type = in.readByte();
+        String roomId = in.readUTF();
+
+        if (type == ROOM_SNAPSHOT) {
+            images.put(roomId, RoomImage.read(in));
+            return;
+        }
+        if (type == ROOM_CREATED) {
+            // A checkpoint may have already snapshotted a room whose creation is queued after it.
+            if (images.containsKey(roomId)) return;
+            RoomImage image = new RoomImage();
+            image.roomId = roomId;
+            image.password = in.readUTF();
+            image.boardCards = in.readInt();
+            image.matchSize = in.readInt();
+            images.put(roomId, image);
+            return;
+        }
+
+        // Events for a room this replay has not seen yet predate its snapshot.
+        RoomImage image = images.get(roomId);
+        if (image == null) return;
+
+        switch (type) {
+            case ROOM_REMOVED:
+                images.remove(roomId);
+                break;
+            case PLAYER_JOINED: {
+                int playerId = in.readInt();
+                image.addSeat(playerId, in.readUTF());
+                break;
+            }
+            case PLAYER_LEFT:
+                image.removeSeat(in.readInt());
+                break;
+            case PLAYER_DISCONNECTED:
+            case PLAYER_RESUMED: {
+                RoomImage.Seat seat = image.seat(in.readInt());
+                if (seat != null) seat.active = (type == PLAYER_RESUMED);
+                break;
+            }
+            case GAME_STARTED:
+                image.running = true;
+                image.currentPlayerIndex = in.readInt();
+                image.cards = RoomImage.readCards(in);
+                image.matched = new long[(image.cards.length + 63) >>> 6];
+                break;
+            case MATCHED: {
+                int playerId = in.readInt();
+                int score = in.readInt();
+                int[] indices = new int[in.readInt()];
+                for (int i = 0; i < indices.length; i++) indices[i] = in.readInt();
+                image.match(playerId, score, indices);
+                break;
+            }
+            case TURN:
+                image.currentPlayerIndex = in.readInt();
+                break;
+            case GAME_STOPPED:
+                image.stop();
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Starts the writer thread, beginning with a checkpoint so the replayed segments can go.
+    public static void start() {
+        if (!ENABLED) return;
+        synchronized (ioLock) {
+            checkpoint();
+        }
+
+        Thread writer = new Thread(Journal::runWriter, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Journal::flush, "journal-flush"));
+    }
+
+    private static void runWriter() {
+        long syncNanos = TimeUnit.MILLISECONDS.toNanos(ServerConfig.JOURNAL_SYNC_MS);
+        long checkpointNanos = TimeUnit.MILLISECONDS.toNanos(ServerConfig.JOURNAL_CHECKPOINT_MS);
+        long lastCheckpoint = System.nanoTime();
+
+        while (true) {
+            // Whatever arrives while parked goes to disk together with one force().
+            LockSupport.parkNanos(syncNanos);
+            synchronized (ioLock) {
+                try {
+                    if (System.nanoTime() - lastCheckpoint >= checkpointNanos) {
+                        checkpoint();
+                        lastCheckpoint = System.nanoTime();
+                    } else {
+                        drain();
+                    }
+                } catch (UncheckedIOException e) {
+                    // drain() only dequeues a record once it is written, so the rest stay
+                    // queued and the next round tries again.
+                    Log.warn("Journal: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    // Keep the writer alive; a dead one would let the queue grow without bound.
+                    Log.error("Journal writer failed", e);
+                }
+            }
+        }
+    }
+
+    private static void flush() {
+        synchronized (ioLock) {
+            if (segment != null) drain();
+        }
+    }
+
+    // Called with ioLock held. Writes and forces everything queued so far. A record leaves
+    // the queue only once it is in a segment, so a failure to roll over loses nothing.
+    private static void drain() {
+        byte[] record;
+        boolean wrote = false;
+        try {
+            while ((record = pending.peek()) != null) {
+                if (!JournalSegment.fits(record.length, ServerConfig.JOURNAL_SEGMENT_BYTES)) {
+                    Log.warn("Journal: dropping a " + record.length + " byte record larger than a segment.");
+                    pending.poll();
+                    continue;
+                }
+                if (!segment.append(record)) {
+                    JournalSegment next = openSegment();
+                    segment.close();
+                    segment = next;
+                    segment.append(record);
+                }
+                pending.poll();
+                wrote = true;
+            }
+        } finally {
+            if (wrote) segment.force();
+        }
+    }
+
+    // Called with ioLock held. Every room queues its snapshot into a fresh segment; once those
+    // are on disk, nothing before that segment is needed to recover.
+    private static void checkpoint() {
+        if (segment != null) drain();
+        // Opened before the old one is closed, so a failure leaves the writer a usable segment.
+        JournalSegment next = openSegment();
+        if (segment != null) segment.close();
+        segment = next;
+        int firstNeeded = segment.index;
+
+        for (GameRoom room : GameServer.getRooms()) room.journalSnapshot();
+        drain();
+
+        for (Path path : segmentPaths()) {
+            if (JournalSegment.indexOf(path) < firstNeeded) JournalSegment.delete(path);
+        }
+    }
+
+    private static JournalSegment openSegment() {
+        try {
+            return JournalSegment.create(dir, nextIndex++, ServerConfig.JOURNAL_SEGMENT_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create journal segment in " + dir, e);
+        }
+    }
+
+    private static List<Path> segmentPaths() {
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> JournalSegment.indexOf(p) >= 0).forEach(paths::add);
+        } catch (IOException e) {
+            Log.warn("Journal: could not list " + dir + ": " + e.getMessage());
+        }
+        paths.sort((a, b) -> Integer.compare(JournalSegment.indexOf(a), JournalSegment.indexOf(b)));
+        return paths;
+    }
+}
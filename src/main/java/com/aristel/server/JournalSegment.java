@@ -0,0 +1,112 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// One fixed-size, memory-mapped journal file. Records are [int length][int crc32][body];
+// a zero length marks the end, since a fresh file is all zeros. A record cut short by a
+// crash fails its checksum and ends the segment.
+final class JournalSegment {
+    private static final int HEADER_BYTES = 8;
+
+    final int index;
+    final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+
+    private JournalSegment(int index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static Path pathFor(Path dir, int index) {
+        return dir.resolve(String.format("journal-%08d.log", index));
+    }
+
+    static JournalSegment create(Path dir, int index, int size) throws IOException {
+        Path path = pathFor(dir, index);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new JournalSegment(index, path, channel, buffer);
+    }
+
+    // Returns false if the record does not fit; the caller rolls to a new segment.
+    boolean append(byte[] body) {
+        // Keep room for the zero length that terminates the segment.
+        if (buffer.remaining() < HEADER_BYTES + body.length + 4) return false;
+        crc.reset();
+        crc.update(body, 0, body.length);
+        buffer.putInt(body.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(body);
+        return true;
+    }
+
+    static boolean fits(int bodyLength, int segmentSize) {
+        return HEADER_BYTES + bodyLength + 4 <= segmentSize;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() {
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {}
+    }
+
+    // Every intact record body in the file, stopping at the end marker or the first bad one.
+    static List<byte[]> read(Path path) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) break;
+
+                byte[] body = new byte[length];
+                buffer.get(body);
+                crc.reset();
+                crc.update(body, 0, length);
+                if ((int) crc.getValue() != checksum) break;
+                records.add(body);
+            }
+        }
+        return records;
+    }
+
+    static int indexOf(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith("journal-") || !name.endsWith(".log")) return -1;
+        try {
+            return Integer.parseInt(name.substring(8, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            Log.warn("Could not delete journal segment " + path + ": " + e.getMessage());
+        }
+    }
+}
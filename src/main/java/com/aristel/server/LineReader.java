@@ -0,0 +1,45 @@
+package com.aristel.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Blocking reader of '\n'-terminated lines for the Router's sockets. A trailing '\r' is
+// dropped. next() returns a fresh array per line; the Router never holds on to many of them.
+final class LineReader {
+    private final InputStream in;
+    private final int maxLength;
+    private final byte[] chunk = new byte[4096];
+    private int chunkPos = 0;
+    private int chunkEnd = 0;
+    private byte[] line = new byte[256];
+
+    // maxLength of 0 accepts lines of any length.
+    LineReader(InputStream in, int maxLength) {
+        this.in = in;
+        this.maxLength = maxLength;
+    }
+
+    // The next line, or null at end of stream. Throws if a line is longer than maxLength.
+    byte[] next() throws IOException {
+        int length = 0;
+        while (true) {
+            if (chunkPos == chunkEnd) {
+                chunkEnd = in.read(chunk);
+                chunkPos = 0;
+                if (chunkEnd <= 0) {
+                    chunkEnd = 0;
+                    return null;
+                }
+            }
+            byte b = chunk[chunkPos++];
+            if (b == '\n') {
+                if (length > 0 && line[length - 1] == '\r') length--;
+                return Arrays.copyOf(line, length);
+            }
+            if (maxLength > 0 && length == maxLength) throw new IOException("line too long");
+            if (length == line.length) line = Arrays.copyOf(line, length * 2);
+            line[length++] = b;
+        }
+    }
+}
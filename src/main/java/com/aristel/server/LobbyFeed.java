@@ -0,0 +1,94 @@
+package com.aristel.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Pushes room-list changes to lobby subscribers. Changes are coalesced per room and
+// flushed once per tick as a single LOBBY_DELTA frame shared by every subscriber:
+//   LOBBY_SNAPSHOT:<version>:<entry>;<entry>;...
+//   LOBBY_DELTA:<version>:+<entry>;-<roomId>;...
+// A client that sees a delta whose version is not its own + 1 re-subscribes to resync.
+public final class LobbyFeed {
+    private static final RoomListing REMOVED = new RoomListing("", "", 0, "", false);
+
+    private static final Set<ClientHandler> subscribers = ConcurrentHashMap.newKeySet();
+    // Guards pending and version only, and is taken under a room's lock by publishListing,
+    // so nothing slower than a map put happens while holding it.
+    private static final Object lock = new Object();
+    private static Map<String, RoomListing> pending = new LinkedHashMap<>();
+    private static long version = 0;
+    // Held while frames go out, so a new subscriber's snapshot and the deltas reach it in
+    // version order. Taken before lock, never under it.
+    private static final Object fanout = new Object();
+
+    static {
+        RoomScheduler.scheduleAtFixedRate(LobbyFeed::flush, ServerConfig.LOBBY_TICK_MS);
+    }
+
+    private LobbyFeed() {}
+
+    public static void subscribe(ClientHandler handler) {
+        synchronized (fanout) {
+            long snapshotVersion;
+            synchronized (lock) {
+                snapshotVersion = version;
+            }
+            // Changes still pending may already show here; the next delta repeats them, and
+            // applying a delta entry twice is harmless.
+            List<RoomListing> listings = new ArrayList<>(GameServer.getListings());
+            subscribers.add(handler);
+            StringBuilder sb = new StringBuilder("LOBBY_SNAPSHOT:").append(snapshotVersion).append(":");
+            for (RoomListing listing : listings) {
+                sb.append(listing.entry).append(";");
+            }
+            handler.sendMessage(sb.toString());
+        }
+    }
+
+    public static void unsubscribe(ClientHandler handler) {
+        subscribers.remove(handler);
+    }
+
+    static void roomChanged(RoomListing listing) {
+        synchronized (lock) {
+            pending.put(listing.roomId, listing);
+        }
+    }
+
+    static void roomRemoved(String roomId) {
+        synchronized (lock) {
+            pending.put(roomId, REMOVED);
+        }
+    }
+
+    private static void flush() {
+        synchronized (fanout) {
+            Map<String, RoomListing> changes;
+            long deltaVersion;
+            synchronized (lock) {
+                if (pending.isEmpty()) return;
+                changes = pending;
+                pending = new LinkedHashMap<>();
+                // Nobody needs these; the next subscriber gets a snapshot of the live list.
+                if (subscribers.isEmpty()) return;
+                deltaVersion = ++version;
+            }
+
+            StringBuilder sb = new StringBuilder("LOBBY_DELTA:").append(deltaVersion).append(":");
+            for (Map.Entry<String, RoomListing> change : changes.entrySet()) {
+                if (change.getValue() == REMOVED) {
+                    sb.append('-').append(change.getKey()).append(';');
+                } else {
+                    sb.append('+').append(change.getValue().entry).append(';');
+                }
+            }
+
+            Frame delta = Frame.of(sb.toString());
+            for (ClientHandler subscriber : subscribers) subscriber.send(delta);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Server side of QUICK_MATCH[:<players>]. Waiting players queue by the room size they asked
+// for, and once per -Dmemory.server.matchTickMs every queue that holds enough players is cut
+// into full batches. Each batch gets a fresh public room and a game that starts right away,
+// so nobody races anyone else for a seat. A seated player gets
+// MATCHED:<room>:<playerId>:<token> in place of JOINED and goes straight to the board.
+public final class Matchmaker {
+    private static final String ROOM_PREFIX = "Quick-";
+
+    // queues[n] holds the players waiting for an n-player game.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final ArrayDeque<ClientHandler>[] queues = new ArrayDeque[GameRoom.MAX_PLAYERS + 1];
+    private static final Object lock = new Object();
+    private static final AtomicInteger roomCounter = new AtomicInteger();
+
+    static {
+        for (int n = 2; n < queues.length; n++) queues[n] = new ArrayDeque<>();
+        RoomScheduler.scheduleAtFixedRate(Matchmaker::tick, ServerConfig.MATCH_TICK_MS);
+    }
+
+    private Matchmaker() {}
+
+    // Queues handler for a game of the given size (clamped to 2..MAX_PLAYERS), replacing
+    // any earlier request of its own.
+    public static void enqueue(ClientHandler handler, int players) {
+        int size = Math.max(2, Math.min(players, GameRoom.MAX_PLAYERS));
+        synchronized (lock) {
+            removeLocked(handler);
+            queues[size].add(handler);
+            handler.sendMessage("QUEUED:" + size + ":" + queues[size].size());
+        }
+    }
+
+    // Returns true if handler was waiting. Once this returns, a tick can no longer seat it.
+    public static boolean cancel(ClientHandler handler) {
+        synchronized (lock) {
+            return removeLocked(handler);
+        }
+    }
+
+    private static boolean removeLocked(ClientHandler handler) {
+        for (int n = 2; n < queues.length; n++) {
+            if (queues[n].remove(handler)) return true;
+        }
+        return false;
+    }
+
+    // While the server is overloaded or out of rooms, players stay queued.
+    private static void tick() {
+        if (Admission.roomRefusal() != null) return;
+        synchronized (lock) {
+            for (int n = 2; n < queues.length; n++) {
+                ArrayDeque<ClientHandler> queue = queues[n];
+                while (queue.size() >= n) {
+                    ClientHandler[] batch = new ClientHandler[n];
+                    for (int i = 0; i < n; i++) batch[i] = queue.poll();
+                    seat(batch);
+                }
+            }
+        }
+    }
+
+    // Called under lock, so a player that disconnects or sends JOIN meanwhile waits in
+    // cancel() until it has a room to leave.
+    private static void seat(ClientHandler[] batch) {
+        GameRoom room;
+        do {
+            String roomId = ROOM_PREFIX + (ServerConfig.SHARD_NAME.isEmpty() ? "" : ServerConfig.SHARD_NAME + "-")
+                    + roomCounter.incrementAndGet();
+            room = new GameRoom(roomId, "");
+        } while (!room.openQuickMatch(batch));
+        Log.info("Quick match: " + batch.length + " players in " + room.getRoomId());
+    }
+
+    // The shard that matched a quick room is named in its id; see Router.shardFor.
+    static String shardOf(String roomId) {
+        if (!roomId.startsWith(ROOM_PREFIX)) return null;
+        int dash = roomId.indexOf('-', ROOM_PREFIX.length());
+        return (dash > 0) ? roomId.substring(ROOM_PREFIX.length(), dash) : null;
+    }
+}
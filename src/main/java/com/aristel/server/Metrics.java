@@ -0,0 +1,236 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// Counters and latency histograms that stay on in production. Recording is an atomic
+// increment on a preallocated histogram or adder, so it never locks or allocates; gauges
+// such as rooms by status are computed when somebody reads them. start() publishes
+// everything as JMX MXBeans under com.aristel.server and, with -Dmemory.server.statsPort,
+// as plain text on that port of the loopback interface (nc localhost <port>, or curl).
+public final class Metrics {
+    private static final Command[] COMMANDS = Command.values();
+    private static final LatencyHistogram[] commandLatency = new LatencyHistogram[COMMANDS.length];
+    private static final LatencyHistogram broadcastLatency = new LatencyHistogram();
+    private static final LongAdder outboundBytes = new LongAdder();
+    private static final LongAdder rateLimited = new LongAdder();
+    private static final LongAdder floodDisconnects = new LongAdder();
+    private static final LongAdder refusedConnections = new LongAdder();
+    private static final LongAdder refusedRooms = new LongAdder();
+    private static final LongAdder reapedRooms = new LongAdder();
+
+    static {
+        for (int i = 0; i < commandLatency.length; i++) commandLatency[i] = new LatencyHistogram();
+    }
+
+    private Metrics() {}
+
+    // Time from startNanos until now, spent handling one command.
+    static void commandHandled(Command command, long startNanos) {
+        commandLatency[command.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    // Time from startNanos until now, spent handing one room event to every recipient.
+    static void broadcastDone(long startNanos) {
+        broadcastLatency.record(System.nanoTime() - startNanos);
+    }
+
+    static void bytesSent(int bytes) {
+        outboundBytes.add(bytes);
+    }
+
+    static void rateLimited() {
+        rateLimited.increment();
+    }
+
+    static void floodDisconnect() {
+        floodDisconnects.increment();
+    }
+
+    static void connectionRefused() {
+        refusedConnections.increment();
+    }
+
+    static void roomRefused() {
+        refusedRooms.increment();
+    }
+
+    static void roomsReaped(int count) {
+        reapedRooms.add(count);
+    }
+
+    public static void start() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new StandardMBean(new ServerView(), ServerMXBean.class, true),
+                    new ObjectName("com.aristel.server:type=Server"));
+            for (Command command : COMMANDS) {
+                if (command == Command.UNKNOWN) continue;
+                server.registerMBean(new StandardMBean(new CommandView(command), CommandMXBean.class, true),
+                        new ObjectName("com.aristel.server:type=Command,name=" + command.name()));
+            }
+        } catch (JMException e) {
+            Log.warn("Metrics: JMX registration failed", e);
+        }
+
+        if (ServerConfig.STATS_PORT > 0) {
+            Thread thread = new Thread(Metrics::serveStats, "stats-endpoint");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    // One plain-text report per connection. A client that sends an HTTP request first gets
+    // the report as an HTTP response.
+    private static void serveStats() {
+        try (ServerSocket listener = new ServerSocket(ServerConfig.STATS_PORT, 8, InetAddress.getLoopbackAddress())) {
+            Log.info("Stats on localhost:" + ServerConfig.STATS_PORT);
+            while (true) {
+                try (Socket client = listener.accept()) {
+                    client.setSoTimeout(200);
+                    boolean http = false;
+                    InputStream in = client.getInputStream();
+                    try {
+                        byte[] request = new byte[1024];
+                        int n = in.read(request);
+                        http = n >= 4 && new String(request, 0, 4, StandardCharsets.US_ASCII).equals("GET ");
+                    } catch (SocketTimeoutException e) {
+                        // Nothing sent: a plain nc.
+                    }
+                    byte[] body = report().getBytes(StandardCharsets.UTF_8);
+                    OutputStream out = client.getOutputStream();
+                    if (http) {
+                        out.write(("HTTP/1.0 200 OK\r\nContent-Type: text/plain; charset=utf-8\r\nContent-Length: "
+                                + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                    }
+                    out.write(body);
+                    out.flush();
+                } catch (IOException e) {
+                    // That client went away; keep serving.
+                }
+            }
+        } catch (IOException e) {
+            Log.warn("Stats endpoint unavailable: " + e.getMessage());
+        }
+    }
+
+    // Every metric as one "name{labels} value" line; latencies are in microseconds.
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "connections_active", "", Admission.connectionCount());
+        line(sb, "connections_refused_total", "", refusedConnections.sum());
+        line(sb, "overloaded", "", Admission.overloaded() ? 1 : 0);
+        line(sb, "outbound_bytes_total", "", outboundBytes.sum());
+        line(sb, "rate_limited_total", "", rateLimited.sum());
+        line(sb, "flood_disconnects_total", "", floodDisconnects.sum());
+        for (Map.Entry<String, Integer> e : roomsByStatus().entrySet()) {
+            line(sb, "rooms", "status=\"" + e.getKey() + "\"", e.getValue());
+        }
+        line(sb, "rooms_refused_total", "", refusedRooms.sum());
+        line(sb, "rooms_reaped_total", "", reapedRooms.sum());
+        line(sb, "timer_backlog", "", RoomScheduler.pendingCount());
+        histogram(sb, "broadcast", "", broadcastLatency);
+        for (Command command : COMMANDS) {
+            LatencyHistogram h = commandLatency[command.ordinal()];
+            if (h.count() > 0) histogram(sb, "command", "command=\"" + command.name() + "\",", h);
+        }
+        return sb.toString();
+    }
+
+    private static void histogram(StringBuilder sb, String name, String labels, LatencyHistogram h) {
+        line(sb, name + "_count", labels.isEmpty() ? "" : labels.substring(0, labels.length() - 1), h.count());
+        line(sb, name + "_us", labels + "quantile=\"0.5\"", micros(h.percentile(0.5)));
+        line(sb, name + "_us", labels + "quantile=\"0.99\"", micros(h.percentile(0.99)));
+        line(sb, name + "_us", labels + "quantile=\"0.999\"", micros(h.percentile(0.999)));
+        line(sb, name + "_us", labels + "quantile=\"1\"", micros(h.max()));
+    }
+
+    private static void line(StringBuilder sb, String name, String labels, Object value) {
+        sb.append(name);
+        if (!labels.isEmpty()) sb.append('{').append(labels).append('}');
+        sb.append(' ').append(value).append('\n');
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+
+    private static Map<String, Integer> roomsByStatus() {
+        Map<String, Integer> counts = new TreeMap<>();
+        counts.put("WAITING", 0);
+        counts.put("IN GAME", 0);
+        for (RoomListing listing : GameServer.getListings()) counts.merge(listing.status, 1, Integer::sum);
+        return counts;
+    }
+
+    public interface ServerMXBean {
+        int getActiveConnections();
+        long getRefusedConnections();
+        boolean isOverloaded();
+        long getOutboundBytes();
+        long getRateLimitedCommands();
+        long getFloodDisconnects();
+        int getWaitingRooms();
+        int getRunningRooms();
+        int getTimerBacklog();
+        long getBroadcastCount();
+        double getBroadcastP50Micros();
+        double getBroadcastP99Micros();
+        double getBroadcastMaxMicros();
+    }
+
+    public interface CommandMXBean {
+        long getCount();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+    }
+
+    private static final class ServerView implements ServerMXBean {
+        public int getActiveConnections() { return Admission.connectionCount(); }
+        public long getRefusedConnections() { return refusedConnections.sum(); }
+        public boolean isOverloaded() { return Admission.overloaded(); }
+        public long getOutboundBytes() { return outboundBytes.sum(); }
+        public long getRateLimitedCommands() { return rateLimited.sum(); }
+        public long getFloodDisconnects() { return floodDisconnects.sum(); }
+        public int getWaitingRooms() { return roomsByStatus().get("WAITING"); }
+        public int getRunningRooms() { return roomsByStatus().get("IN GAME"); }
+        public int getTimerBacklog() { return RoomScheduler.pendingCount(); }
+        public long getBroadcastCount() { return broadcastLatency.count(); }
+        public double getBroadcastP50Micros() { return broadcastLatency.percentile(0.5) / 1000.0; }
+        public double getBroadcastP99Micros() { return broadcastLatency.percentile(0.99) / 1000.0; }
+        public double getBroadcastMaxMicros() { return broadcastLatency.max() / 1000.0; }
+    }
+
+    private static final class CommandView implements CommandMXBean {
+        private final LatencyHistogram histogram;
+
+        CommandView(Command command) {
+            this.histogram = commandLatency[command.ordinal()];
+        }
+
+        public long getCount() { return histogram.count(); }
+        public double getP50Micros() { return histogram.percentile(0.5) / 1000.0; }
+        public double getP99Micros() { return histogram.percentile(0.99) / 1000.0; }
+        public double getP999Micros() { return histogram.percentile(0.999) / 1000.0; }
+        public double getMaxMicros() { return histogram.max() / 1000.0; }
+    }
+}
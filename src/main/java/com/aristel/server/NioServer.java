@@ -0,0 +1,42 @@
+package com.aristel.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+public class NioServer {
+    private final int port;
+    private final EventLoop[] loops;
+    private int nextLoop = 0;
+
+    public NioServer(int port, int loopCount) throws IOException {
+        this.port = port;
+        this.loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(i);
+        }
+    }
+
+    public void run() throws IOException {
+        for (EventLoop loop : loops) loop.start();
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port), ServerConfig.ACCEPT_BACKLOG);
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                String refusal = Admission.admitConnection();
+                if (refusal != null) {
+                    Admission.refuse(channel, refusal);
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                loops[nextLoop].register(channel);
+                nextLoop = (nextLoop + 1) % loops.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class NioTransport implements Transport {
+    private final SocketChannel channel;
+    private final EventLoop loop;
+    private SelectionKey key;
+    private ClientHandler handler;
+    private final OutboundQueue outbound = new OutboundQueue(ServerConfig.OUTBOUND_QUEUE_SIZE, ServerConfig.SLOW_CONSUMER_POLICY);
+    private ByteBuffer pending;
+    private Frame pendingFrame;
+    private volatile Frame upgradeFrame;
+    private boolean binary = false;
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    NioTransport(SocketChannel channel, EventLoop loop) {
+        this.channel = channel;
+        this.loop = loop;
+    }
+
+    void attach(SelectionKey key, ClientHandler handler) {
+        this.key = key;
+        this.handler = handler;
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    @Override
+    public void send(Frame frame) {
+        if (closed) return;
+        if (!outbound.offer(frame)) {
+            Log.warn("Dropping slow client");
+            // The disconnect itself runs on the event loop, outside the caller's room lock.
+            close();
+        }
+        if (flushQueued.compareAndSet(false, true)) loop.requestFlush(this);
+    }
+
+    @Override
+    public void upgrade(Frame handshake) {
+        upgradeFrame = handshake;
+        send(handshake);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        outbound.close();
+        try {
+            channel.close();
+        } catch (IOException e) {}
+    }
+
+    // Called on the owning event loop only.
+    void decode(ByteBuffer buf) {
+        try {
+            if (!handler.receive(buf)) {
+                Log.warn("Dropping client: line too long");
+                handler.disconnect();
+            }
+        } catch (RuntimeException e) {
+            Log.error("Client handler failed", e);
+            handler.disconnect();
+        }
+    }
+
+    // Called on the owning event loop only.
+    void flush() {
+        flushQueued.set(false);
+        if (closed) {
+            handler.disconnect();
+            return;
+        }
+        try {
+            while (true) {
+                if (pending == null) {
+                    pendingFrame = outbound.poll();
+                    if (pendingFrame == null) break;
+                    pending = pendingFrame.buffer(binary);
+                }
+                Metrics.bytesSent(channel.write(pending));
+                if (pending.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (pendingFrame == upgradeFrame) binary = true;
+                pending = null;
+                pendingFrame = null;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException | CancelledKeyException e) {
+            handler.disconnect();
+        }
+    }
+
+    void fail() {
+        handler.disconnect();
+    }
+}
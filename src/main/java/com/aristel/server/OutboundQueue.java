@@ -0,0 +1,115 @@
+package com.aristel.server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded per-connection queue, so broadcasting never waits on a socket write.
+public class OutboundQueue {
+    private final ArrayDeque<Frame> messages = new ArrayDeque<>();
+    private final int capacity;
+    private final SlowConsumerPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean closed = false;
+
+    public OutboundQueue(int capacity, SlowConsumerPolicy policy) {
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    // Returns false when the consumer is too slow and should be disconnected.
+    public boolean offer(Frame frame) {
+        lock.lock();
+        try {
+            if (closed) return true;
+            if (messages.size() >= capacity) {
+                if (policy == SlowConsumerPolicy.DISCONNECT) return false;
+                // A dropped sequenced event would leave a gap RESUME cannot see, so a
+                // RESUMABLE consumer is disconnected instead and resumes cleanly.
+                if (policy == SlowConsumerPolicy.DROP) return !frame.isSequenced();
+                if (!coalesce(frame)) return false;
+            }
+            messages.addLast(frame);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Frees a slot by discarding an older copy of the same state message,
+    // or failing that, the oldest message a client can live without. Room events for
+    // RESUMABLE connections are compared by the message inside the EV wrapper. A sequenced
+    // event is only dropped when the new frame supersedes it: otherwise the client's last
+    // sequence number would move past an event it never saw, and RESUME could not replay it.
+    private boolean coalesce(Frame frame) {
+        String kind = frame.kind();
+        if (isReplaceable(kind)) {
+            Iterator<Frame> it = messages.iterator();
+            while (it.hasNext()) {
+                if (it.next().kind().equals(kind)) {
+                    it.remove();
+                    return true;
+                }
+            }
+        }
+
+        Iterator<Frame> it = messages.iterator();
+        while (it.hasNext()) {
+            Frame queued = it.next();
+            if (queued.isSequenced()) continue;
+            String prefix = queued.prefix();
+            if (prefix.equals("MSG") || isReplaceable(prefix)) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isReplaceable(String prefix) {
+        return prefix.equals("ROOM_LIST") || prefix.equals("ROOM_STATE") || prefix.equals("SCORES");
+    }
+
+    public Frame poll() {
+        lock.lock();
+        try {
+            return messages.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks until a message is available; returns null once the queue is closed.
+    public Frame take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (messages.isEmpty() && !closed) notEmpty.await();
+            return closed ? null : messages.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return messages.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            messages.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
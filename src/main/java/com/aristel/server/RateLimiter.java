@@ -0,0 +1,105 @@
+package com.aristel.server;
+
+// Token buckets for one connection, one per class of command: CLICK, lobby reads
+// (GET_ROOMS, SEARCH_ROOMS, state requests), room changes (CREATE, JOIN, START, ...) and
+// everything else. Each class refills at its -Dmemory.server.<class>Rate per second up to
+// <class>Burst; a rate of 0 leaves the class unlimited. Every rejected command also costs a
+// strike, and a connection that runs out of strikes (more than floodLimit rejections within
+// about ten seconds) is flooding and gets disconnected.
+//
+// Only the connection's reader thread or event loop calls check(), so nothing here is
+// synchronized, and a check allocates nothing.
+final class RateLimiter {
+    static final int ALLOW = 0;
+    // Rejected; the first rejection in a row for its class is answered with ERROR:RATE_LIMITED.
+    static final int REJECT = 1;
+    static final int REJECT_QUIET = 2;
+    static final int DISCONNECT = 3;
+    // Shared by every connection, so a rejection costs no allocation or encoding.
+    static final Frame REJECTED = Frame.of("ERROR:RATE_LIMITED");
+
+    private static final int CLICK = 0;
+    private static final int LOBBY = 1;
+    private static final int ROOM = 2;
+    private static final int OTHER = 3;
+    private static final int[] CLASS_OF = classify();
+
+    private final Bucket[] buckets = {
+            new Bucket(ServerConfig.CLICK_RATE, ServerConfig.CLICK_BURST),
+            new Bucket(ServerConfig.LOBBY_RATE, ServerConfig.LOBBY_BURST),
+            new Bucket(ServerConfig.ROOM_RATE, ServerConfig.ROOM_BURST),
+            new Bucket(ServerConfig.OTHER_RATE, ServerConfig.OTHER_BURST),
+    };
+    private final boolean[] rejecting = new boolean[buckets.length];
+    private final Bucket strikes = new Bucket(ServerConfig.FLOOD_LIMIT / 10.0, ServerConfig.FLOOD_LIMIT);
+
+    private static int[] classify() {
+        int[] classes = new int[Command.values().length];
+        for (Command c : Command.values()) {
+            switch (c) {
+                case CLICK:
+                    classes[c.ordinal()] = CLICK;
+                    break;
+                case GET_ROOMS:
+                case SEARCH_ROOMS:
+                case SUBSCRIBE_LOBBY:
+                case UNSUBSCRIBE_LOBBY:
+                case GET_STATE:
+                case GET_GAME_STATE:
+                    classes[c.ordinal()] = LOBBY;
+                    break;
+                case CREATE:
+                case JOIN:
+                case SPECTATE:
+                case LEAVE:
+                case START:
+                case KICK:
+                case RESET_GAME:
+                case QUICK_MATCH:
+                case CANCEL_MATCH:
+                case RESUME:
+                    classes[c.ordinal()] = ROOM;
+                    break;
+                default:
+                    classes[c.ordinal()] = OTHER;
+                    break;
+            }
+        }
+        return classes;
+    }
+
+    int check(Command command, long nowNanos) {
+        int cls = CLASS_OF[command.ordinal()];
+        if (buckets[cls].take(nowNanos)) {
+            rejecting[cls] = false;
+            return ALLOW;
+        }
+        if (ServerConfig.FLOOD_LIMIT > 0 && !strikes.take(nowNanos)) return DISCONNECT;
+        if (rejecting[cls]) return REJECT_QUIET;
+        rejecting[cls] = true;
+        return REJECT;
+    }
+
+    private static final class Bucket {
+        private final double perNano;
+        private final double burst;
+        private double tokens;
+        private long last;
+
+        Bucket(double perSecond, int burst) {
+            this.perNano = perSecond / 1e9;
+            this.burst = Math.max(1, burst);
+            this.tokens = this.burst;
+            this.last = System.nanoTime();
+        }
+
+        boolean take(long now) {
+            if (perNano <= 0) return true;
+            tokens = Math.min(burst, tokens + (now - last) * perNano);
+            last = now;
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.aristel.server;
+
+// The last few sequenced events of one room, oldest overwritten first, so a player who
+// reconnects can be sent exactly what they missed. Not thread-safe; GameRoom uses it under its lock.
+public final class ReplayBuffer {
+    private final Frame[] frames;
+    private int latest = 0;
+
+    public ReplayBuffer(int capacity) {
+        this.frames = new Frame[capacity];
+    }
+
+    public void add(int seq, Frame frame) {
+        frames[seq % frames.length] = frame;
+        latest = seq;
+    }
+
+    public int latest() {
+        return latest;
+    }
+
+    // True if every event after lastSeq is still held.
+    public boolean covers(int lastSeq) {
+        int oldest = Math.max(1, latest - frames.length + 1);
+        return lastSeq >= oldest - 1 && lastSeq <= latest;
+    }
+
+    public Frame get(int seq) {
+        return frames[seq % frames.length];
+    }
+}
@@ -0,0 +1,193 @@
+package com.aristel.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Sorted index over the room listings for SEARCH_ROOMS. Rooms are ordered by lower-cased
+// name (ties broken by the exact id), which is also the paging order: a cursor is the id of
+// the last room on the previous page. Readers never lock; writers take writeLock.
+// A substring query of three or more characters only walks the rooms that contain the
+// query's rarest trigram. Visibility, free seats and shorter substrings are not indexed, so a
+// page stops after examining searchScanLimit rooms: it comes back with the matches found so
+// far (possibly none) and a cursor at the last room examined, from which the next page goes on.
+public final class RoomCatalogue {
+    private final ConcurrentSkipListMap<String, RoomListing> byName = new ConcurrentSkipListMap<>();
+    private final Map<String, ConcurrentSkipListMap<String, RoomListing>> byStatus = new ConcurrentHashMap<>();
+    private final Map<String, Posting> trigrams = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public void put(RoomListing listing) {
+        String key = key(listing.roomId);
+        writeLock.lock();
+        try {
+            RoomListing old = byName.put(key, listing);
+            if (old == null) {
+                for (String gram : trigramsOf(lower(listing.roomId))) {
+                    Posting posting = trigrams.computeIfAbsent(gram, g -> new Posting());
+                    posting.keys.add(key);
+                    posting.size++;
+                }
+            } else if (!old.status.equals(listing.status)) {
+                byStatus.get(old.status).remove(key);
+            }
+            byStatus.computeIfAbsent(listing.status, s -> new ConcurrentSkipListMap<>()).put(key, listing);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(String roomId) {
+        String key = key(roomId);
+        writeLock.lock();
+        try {
+            RoomListing old = byName.remove(key);
+            if (old == null) return;
+
+            byStatus.get(old.status).remove(key);
+            for (String gram : trigramsOf(lower(roomId))) {
+                Posting posting = trigrams.get(gram);
+                posting.keys.remove(key);
+                if (--posting.size == 0) trigrams.remove(gram);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    public Page search(Query query) {
+        NavigableMap<String, RoomListing> source = byName;
+        if (query.status != null) {
+            source = byStatus.get(query.status);
+            if (source == null) return Page.EMPTY;
+        }
+
+        String after = query.after.isEmpty() ? null : key(query.after);
+        String needle = lower(query.text);
+
+        if (!needle.isEmpty() && query.prefix) {
+            NavigableMap<String, RoomListing> range = source.subMap(needle, true, needle + Character.MAX_VALUE, false);
+            if (after != null) range = range.tailMap(after, false);
+            // The range holds only names starting with the needle.
+            return collect(range.values(), "", query);
+        } else if (needle.length() >= 3) {
+            Posting rarest = null;
+            for (String gram : trigramsOf(needle)) {
+                Posting posting = trigrams.get(gram);
+                if (posting == null) return Page.EMPTY;
+                if (rarest == null || posting.size < rarest.size) rarest = posting;
+            }
+            Set<String> keys = (after == null) ? rarest.keys : rarest.keys.tailSet(after, false);
+            NavigableMap<String, RoomListing> rooms = source;
+            return collect(() -> keys.stream().map(rooms::get).filter(Objects::nonNull).iterator(), needle, query);
+        } else {
+            NavigableMap<String, RoomListing> range = (after == null) ? source : source.tailMap(after, false);
+            return collect(range.values(), needle, query);
+        }
+    }
+
+    // Walks candidates in name order until the page is full or the scan budget is spent.
+    private static Page collect(Iterable<RoomListing> candidates, String needle, Query query) {
+        List<RoomListing> rooms = new ArrayList<>(query.limit);
+        int budget = ServerConfig.SEARCH_SCAN_LIMIT;
+        int scanned = 0;
+        RoomListing examined = null;
+        for (RoomListing listing : candidates) {
+            if (budget > 0 && scanned++ == budget) return new Page(rooms, examined.roomId);
+            examined = listing;
+            if (!needle.isEmpty() && !lower(listing.roomId).contains(needle)) continue;
+            if (!query.matches(listing)) continue;
+            if (rooms.size() == query.limit) return new Page(rooms, last(rooms));
+            rooms.add(listing);
+        }
+        return new Page(rooms, "");
+    }
+
+    private static String last(List<RoomListing> rooms) {
+        return rooms.get(rooms.size() - 1).roomId;
+    }
+
+    private static String key(String roomId) {
+        return lower(roomId) + '\0' + roomId;
+    }
+
+    private static String lower(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigramsOf(String s) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= s.length(); i++) grams.add(s.substring(i, i + 3));
+        return grams;
+    }
+
+    private static final class Posting {
+        final ConcurrentSkipListSet<String> keys = new ConcurrentSkipListSet<>();
+        volatile int size = 0;
+    }
+
+    public static final class Query {
+        public String text = "";
+        public boolean prefix = false;
+        public String status = null;
+        public Boolean isPrivate = null;
+        public int minFreeSeats = 0;
+        public int limit = 20;
+        public String after = "";
+
+        // The fields of SEARCH_ROOMS:<text>:<CONTAINS|PREFIX>:<status>:<visibility>:<minFreeSeats>:<limit>:<cursor>.
+        static Query parse(CommandParser parser) {
+            Query query = new Query();
+            query.text = parser.nextString();
+            query.prefix = parser.nextString().equals("PREFIX");
+            String status = parser.nextString();
+            if (!status.isEmpty() && !status.equals("ANY")) query.status = status;
+            String visibility = parser.nextString();
+            if (!visibility.isEmpty() && !visibility.equals("ANY")) query.isPrivate = visibility.equals("PRIVATE");
+            query.minFreeSeats = parser.nextInt(0);
+            int limit = parser.nextInt(ServerConfig.SEARCH_PAGE_SIZE);
+            query.limit = Math.max(1, Math.min(limit, ServerConfig.SEARCH_PAGE_SIZE));
+            query.after = parser.nextString();
+            return query;
+        }
+
+        boolean matches(RoomListing listing) {
+            if (isPrivate != null && listing.isPrivate != isPrivate) return false;
+            return GameRoom.MAX_PLAYERS - listing.playerCount >= minFreeSeats;
+        }
+    }
+
+    public static final class Page {
+        static final Page EMPTY = new Page(Collections.emptyList(), "");
+
+        public final List<RoomListing> rooms;
+        public final String nextCursor;
+
+        Page(List<RoomListing> rooms, String nextCursor) {
+            this.rooms = rooms;
+            this.nextCursor = nextCursor;
+        }
+
+        String toMessage() {
+            StringBuilder sb = new StringBuilder("SEARCH_RESULT:").append(CommandParser.escape(nextCursor)).append(":");
+            for (RoomListing listing : rooms) {
+                sb.append(listing.entry).append(";");
+            }
+            return sb.toString();
+        }
+    }
+}
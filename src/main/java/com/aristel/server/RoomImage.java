@@ -0,0 +1,128 @@
+package com.aristel.server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Plain copy of everything needed to rebuild a GameRoom: what a ROOM_SNAPSHOT journal
+// record holds, and what recovery folds the other records into.
+final class RoomImage {
+    static final class Seat {
+        int playerId;
+        int score;
+        String token;
+        boolean active;
+    }
+
+    String roomId;
+    String password;
+    int boardCards;
+    int matchSize;
+    int nextPlayerId;
+    int masterId = -1;
+    final List<Seat> seats = new ArrayList<>();
+    boolean running;
+    int currentPlayerIndex;
+    short[] cards;
+    long[] matched;
+
+    Seat seat(int playerId) {
+        for (Seat s : seats) {
+            if (s.playerId == playerId) return s;
+        }
+        return null;
+    }
+
+    void addSeat(int playerId, String token) {
+        Seat s = new Seat();
+        s.playerId = playerId;
+        s.token = token;
+        s.active = true;
+        seats.add(s);
+        nextPlayerId = Math.max(nextPlayerId, playerId + 1);
+        if (seats.size() == 1) masterId = playerId;
+    }
+
+    // Same succession rule as GameRoom: the first remaining seat becomes master.
+    void removeSeat(int playerId) {
+        seats.removeIf(s -> s.playerId == playerId);
+        if (masterId == playerId) masterId = seats.isEmpty() ? -1 : seats.get(0).playerId;
+    }
+
+    void match(int playerId, int score, int[] indices) {
+        Seat s = seat(playerId);
+        if (s != null) s.score = score;
+        if (matched == null) return;
+        for (int index : indices) matched[index >>> 6] |= 1L << index;
+    }
+
+    void stop() {
+        running = false;
+        cards = null;
+        matched = null;
+        seats.removeIf(s -> !s.active);
+        for (Seat s : seats) s.score = 0;
+        if (seat(masterId) == null) masterId = seats.isEmpty() ? -1 : seats.get(0).playerId;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(roomId);
+        out.writeUTF(password);
+        out.writeInt(boardCards);
+        out.writeInt(matchSize);
+        out.writeInt(nextPlayerId);
+        out.writeInt(masterId);
+        out.writeInt(seats.size());
+        for (Seat s : seats) {
+            out.writeInt(s.playerId);
+            out.writeInt(s.score);
+            out.writeUTF(s.token == null ? "" : s.token);
+            out.writeBoolean(s.active);
+        }
+        out.writeBoolean(running);
+        if (!running) return;
+        out.writeInt(currentPlayerIndex);
+        writeCards(out, cards);
+        out.writeInt(matched.length);
+        for (long word : matched) out.writeLong(word);
+    }
+
+    static RoomImage read(DataInputStream in) throws IOException {
+        RoomImage image = new RoomImage();
+        image.roomId = in.readUTF();
+        image.password = in.readUTF();
+        image.boardCards = in.readInt();
+        image.matchSize = in.readInt();
+        image.nextPlayerId = in.readInt();
+        image.masterId = in.readInt();
+        int seatCount = in.readInt();
+        for (int i = 0; i < seatCount; i++) {
+            Seat s = new Seat();
+            s.playerId = in.readInt();
+            s.score = in.readInt();
+            s.token = in.readUTF();
+            s.active = in.readBoolean();
+            image.seats.add(s);
+        }
+        image.running = in.readBoolean();
+        if (!image.running) return image;
+        image.currentPlayerIndex = in.readInt();
+        image.cards = readCards(in);
+        image.matched = new long[in.readInt()];
+        for (int i = 0; i < image.matched.length; i++) image.matched[i] = in.readLong();
+        return image;
+    }
+
+    static void writeCards(DataOutputStream out, short[] cards) throws IOException {
+        out.writeInt(cards.length);
+        for (short card : cards) out.writeShort(card);
+    }
+
+    static short[] readCards(DataInputStream in) throws IOException {
+        short[] cards = new short[in.readInt()];
+        for (int i = 0; i < cards.length; i++) cards[i] = in.readShort();
+        return cards;
+    }
+}
@@ -0,0 +1,37 @@
+package com.aristel.server;
+
+// Immutable lobby view of one room, captured under the room lock whenever it changes.
+public final class RoomListing {
+    public final String roomId;
+    public final String masterName;
+    public final int playerCount;
+    public final String status;
+    public final boolean isPrivate;
+    public final String entry;
+
+    public RoomListing(String roomId, String masterName, int playerCount, String status, boolean isPrivate) {
+        this.roomId = roomId;
+        this.masterName = masterName;
+        this.playerCount = playerCount;
+        this.status = status;
+        this.isPrivate = isPrivate;
+        this.entry = roomId + "," + masterName + "," + playerCount + "," + status + "," + (isPrivate ? "PRIVATE" : "PUBLIC");
+    }
+
+    // Reads an entry back, as the Router does with the lobby feeds of its shards. The room id
+    // may itself contain commas, so the fixed fields are taken from the right.
+    static RoomListing fromEntry(String entry) {
+        int visibility = entry.lastIndexOf(',');
+        int status = entry.lastIndexOf(',', visibility - 1);
+        int count = entry.lastIndexOf(',', status - 1);
+        int master = entry.lastIndexOf(',', count - 1);
+        if (master <= 0) return null;
+        try {
+            return new RoomListing(entry.substring(0, master), entry.substring(master + 1, count),
+                    Integer.parseInt(entry.substring(count + 1, status)), entry.substring(status + 1, visibility),
+                    entry.substring(visibility + 1).equals("PRIVATE"));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Two timer threads shared by every room. "room-scheduler" runs the rooms' delayed work
+// (mismatch hides and the like), so turn timing never waits behind anything else.
+// "room-housekeeping" runs the periodic server-wide tasks: the lobby flush, the Matchmaker
+// tick, admission sampling and the room reaper.
+//
+// Every task is guarded: an exception is logged, and a periodic task keeps its schedule
+// instead of being cancelled by the executor.
+public final class RoomScheduler {
+    private static final ScheduledThreadPoolExecutor executor = newExecutor("room-scheduler");
+    private static final ScheduledThreadPoolExecutor housekeeping = newExecutor("room-housekeeping");
+
+    private RoomScheduler() {}
+
+    private static ScheduledThreadPoolExecutor newExecutor(String name) {
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        return pool;
+    }
+
+    // Runs of these one-shot tasks are recorded as RoomTimer events with their lateness.
+    public static ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        return executor.schedule(() -> {
+            JfrEvents.RoomTimer event = new JfrEvents.RoomTimer();
+            event.begin();
+            long lateness = System.nanoTime() - due;
+            guarded(task);
+            if (event.shouldCommit()) {
+                event.lateness = Math.max(0, lateness);
+                event.commit();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Periodic work runs on the housekeeping thread, never on the room timer thread.
+    public static ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long periodMs) {
+        return housekeeping.scheduleAtFixedRate(() -> guarded(task), periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void guarded(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            Log.error("Scheduled task failed", e);
+        }
+    }
+
+    // Room timers waiting to run.
+    public static int pendingCount() {
+        return executor.getQueue().size();
+    }
+}
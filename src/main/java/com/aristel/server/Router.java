@@ -0,0 +1,138 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Front process for cluster mode. Several GameServers run as shards, each started with
+// -Dmemory.server.shardName and its own -Dmemory.server.port, and the Router is started with
+// -Dmemory.router.shards=name=host:port,... Rooms are placed on shards by consistent hashing
+// of the room id. Clients connect to the Router only: it answers the lobby commands from a
+// list merged from every shard's LobbyFeed, and once a client sends CREATE, JOIN, SPECTATE
+// or RESUME it relays that connection to the owning shard (see RouterSession).
+public final class Router {
+    private static final Map<String, RoomListing> listings = new ConcurrentHashMap<>();
+    private static final RoomCatalogue catalogue = new RoomCatalogue();
+    private static final Set<RouterSession> subscribers = ConcurrentHashMap.newKeySet();
+    private static final Object lobbyLock = new Object();
+    private static long version = 0;
+    private static Frame roomList;
+    private static ShardRing ring;
+
+    private Router() {}
+
+    public static void main(String[] args) throws IOException {
+        List<ShardLink> shards = new ArrayList<>();
+        for (String spec : ServerConfig.ROUTER_SHARDS.split(",")) {
+            if (!spec.isBlank()) shards.add(ShardLink.parse(spec));
+        }
+        if (shards.isEmpty()) {
+            System.out.println("Usage: -Dmemory.router.shards=name=host:port,name=host:port");
+            return;
+        }
+        ring = new ShardRing(shards, ServerConfig.ROUTER_VIRTUAL_NODES);
+        for (ShardLink shard : shards) {
+            Thread link = new Thread(shard, "shard-link-" + shard.name);
+            link.setDaemon(true);
+            link.start();
+        }
+
+        Log.info("Memory Game Router running on port " + ServerConfig.PORT + " with " + shards.size() + " shards");
+        try (ServerSocket serverSocket = new ServerSocket(ServerConfig.PORT, ServerConfig.ACCEPT_BACKLOG)) {
+            while (true) {
+                Socket clientSocket = serverSocket.accept();
+                String refusal = Admission.admitConnection();
+                if (refusal != null) {
+                    Admission.refuse(clientSocket, refusal);
+                    continue;
+                }
+                GameServer.startThread(new RouterSession(clientSocket));
+            }
+        }
+    }
+
+    static ShardLink shardFor(String roomId) {
+        // Quick-match rooms are named after the shard that made them.
+        String matchedOn = Matchmaker.shardOf(roomId);
+        ShardLink shard = (matchedOn != null) ? ring.named(matchedOn) : null;
+        return (shard != null) ? shard : ring.owner(roomId);
+    }
+
+    // QUICK_MATCH needs every waiting player in one queue, so it goes to a single shard.
+    static ShardLink matchmakingShard() {
+        return ring.owner("QUICK_MATCH");
+    }
+
+    // Session tokens issued by a shard start with "<shard name>.".
+    static ShardLink shardForToken(String token) {
+        int dot = token.indexOf('.');
+        return (dot > 0) ? ring.named(token.substring(0, dot)) : null;
+    }
+
+    // Applies +<entry> / -<roomId> changes from one shard and forwards them to subscribers
+    // as a single LOBBY_DELTA under the Router's own version numbers.
+    static void applyChanges(List<String> changes) {
+        synchronized (lobbyLock) {
+            StringBuilder sb = new StringBuilder("LOBBY_DELTA:").append(++version).append(":");
+            for (String change : changes) {
+                if (change.charAt(0) == '-') {
+                    String roomId = change.substring(1);
+                    listings.remove(roomId);
+                    catalogue.remove(roomId);
+                } else {
+                    RoomListing listing = RoomListing.fromEntry(change.substring(1));
+                    if (listing == null) {
+                        Log.warn("Ignoring malformed lobby entry: " + change);
+                        continue;
+                    }
+                    listings.put(listing.roomId, listing);
+                    catalogue.put(listing);
+                }
+                sb.append(change).append(';');
+            }
+            roomList = null;
+
+            Frame delta = Frame.of(sb.toString());
+            for (RouterSession subscriber : subscribers) subscriber.send(delta);
+        }
+    }
+
+    static void subscribe(RouterSession session) {
+        synchronized (lobbyLock) {
+            subscribers.add(session);
+            StringBuilder sb = new StringBuilder("LOBBY_SNAPSHOT:").append(version).append(":");
+            for (RoomListing listing : listings.values()) {
+                sb.append(listing.entry).append(";");
+            }
+            session.sendMessage(sb.toString());
+        }
+    }
+
+    static void unsubscribe(RouterSession session) {
+        subscribers.remove(session);
+    }
+
+    static Frame getRoomList() {
+        synchronized (lobbyLock) {
+            if (roomList == null) {
+                StringBuilder sb = new StringBuilder("ROOM_LIST:");
+                for (RoomListing listing : listings.values()) {
+                    sb.append(listing.entry).append(";");
+                }
+                roomList = Frame.of(sb.toString());
+            }
+            return roomList;
+        }
+    }
+
+    static RoomCatalogue.Page searchRooms(RoomCatalogue.Query query) {
+        return catalogue.search(query);
+    }
+}
@@ -0,0 +1,183 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+import com.aristel.protocol.BinaryCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// One client connection on the Router. Lobby commands are answered here from the merged
+// lobby. CREATE, JOIN and SPECTATE pick the shard that owns the room id, RESUME the shard
+// named in the token and QUICK_MATCH the one shard that runs matchmaking; the session opens
+// a connection to that shard (or reuses the one it has) and from then on relays every other
+// line both ways. The Router speaks text only: it declines HELLO:BIN1, so a client behind it
+// stays on the text protocol.
+final class RouterSession implements Runnable {
+    private final Socket socket;
+    private SocketTransport transport;
+    private final CommandParser parser = new CommandParser();
+    // Lobby commands never reach a shard, so the Router holds each session to the same budgets.
+    private final RateLimiter limiter = new RateLimiter();
+    private boolean resumable = false;
+    // Written by the reader thread only; the relay thread compares against it.
+    private volatile Socket backend;
+    private ShardLink shard;
+    private OutputStream backendOut;
+
+    RouterSession(Socket socket) {
+        this.socket = socket;
+    }
+
+    @Override
+    public void run() {
+        try {
+            transport = new SocketTransport(socket);
+            LineReader reader = new LineReader(socket.getInputStream(), ServerConfig.MAX_LINE_LENGTH);
+            byte[] line;
+            while ((line = reader.next()) != null) {
+                handleLine(line);
+            }
+        } catch (IOException e) {
+            // Client went away or sent an oversized line.
+        } finally {
+            Router.unsubscribe(this);
+            closeBackend();
+            if (transport != null) transport.close();
+            Admission.connectionClosed();
+        }
+    }
+
+    private void handleLine(byte[] line) throws IOException {
+        parser.reset(line, 0, line.length);
+        Command command = parser.command();
+        int verdict = limiter.check(command, System.nanoTime());
+        if (verdict != RateLimiter.ALLOW) {
+            Metrics.rateLimited();
+            if (verdict == RateLimiter.DISCONNECT) {
+                Metrics.floodDisconnect();
+                Log.warn("Dropping client: command flood");
+                throw new IOException("command flood");
+            }
+            if (verdict == RateLimiter.REJECT) send(RateLimiter.REJECTED);
+            return;
+        }
+        switch (command) {
+            case HELLO:
+                sendMessage(BinaryCodec.HANDSHAKE_DECLINED);
+                break;
+            case GET_ROOMS:
+                send(Router.getRoomList());
+                break;
+            case SUBSCRIBE_LOBBY:
+                Router.subscribe(this);
+                break;
+            case UNSUBSCRIBE_LOBBY:
+                Router.unsubscribe(this);
+                break;
+            case SEARCH_ROOMS:
+                sendMessage(Router.searchRooms(RoomCatalogue.Query.parse(parser)).toMessage());
+                break;
+            case CREATE:
+            case JOIN:
+            case SPECTATE:
+                if (attach(Router.shardFor(parser.nextString()))) {
+                    forward(line);
+                } else {
+                    sendMessage("ERROR:SHARD_UNAVAILABLE");
+                }
+                break;
+            case RESUME: {
+                ShardLink owner = Router.shardForToken(parser.nextString());
+                if (owner != null && attach(owner)) {
+                    forward(line);
+                } else {
+                    sendMessage("ERROR:RESUME_FAILED");
+                }
+                break;
+            }
+            case QUICK_MATCH:
+                if (attach(Router.matchmakingShard())) {
+                    forward(line);
+                } else {
+                    sendMessage("ERROR:SHARD_UNAVAILABLE");
+                }
+                break;
+            case RESUMABLE:
+                resumable = true;
+                if (backend != null) forward(line);
+                break;
+            default:
+                if (backend != null) forward(line);
+                break;
+        }
+    }
+
+    // Makes owner the shard this session talks to. Returns false if it cannot be reached.
+    private boolean attach(ShardLink owner) {
+        if (backend != null && shard == owner) return true;
+        // Leaving the old shard's connection drops whatever room it held there.
+        closeBackend();
+        try {
+            Socket s = owner.connect();
+            backendOut = s.getOutputStream();
+            shard = owner;
+            backend = s;
+            if (resumable) forward("RESUMABLE".getBytes(StandardCharsets.US_ASCII));
+            GameServer.startThread(() -> relay(s));
+            return true;
+        } catch (IOException e) {
+            Log.warn("Shard " + owner.name + " unreachable: " + e.getMessage());
+            closeBackend();
+            return false;
+        }
+    }
+
+    private void forward(byte[] line) throws IOException {
+        backendOut.write(line);
+        backendOut.write('\n');
+        backendOut.flush();
+    }
+
+    // Copies the shard's lines to the client. The shard closing the connection while it is
+    // still this session's shard closes the client too, which then reconnects and RESUMEs.
+    private void relay(Socket s) {
+        try {
+            LineReader reader = new LineReader(s.getInputStream(), 0);
+            byte[] line;
+            while ((line = reader.next()) != null) {
+                String text = new String(line, StandardCharsets.UTF_8);
+                // The client has left the lobby, as a direct connection would on the shard.
+                if (text.startsWith("JOINED:") || text.startsWith("MATCHED:") || text.startsWith("SPECTATING:")
+                        || text.startsWith("RESUMED:")) {
+                    Router.unsubscribe(this);
+                }
+                sendMessage(text);
+            }
+        } catch (IOException e) {
+            // Treated like end of stream below.
+        }
+        if (backend == s) transport.close();
+    }
+
+    private void closeBackend() {
+        Socket s = backend;
+        backend = null;
+        shard = null;
+        backendOut = null;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException e) {}
+        }
+    }
+
+    void sendMessage(String msg) {
+        send(Frame.of(msg));
+    }
+
+    void send(Frame frame) {
+        if (transport != null) transport.send(frame);
+    }
+}
@@ -0,0 +1,75 @@
+package com.aristel.server;
+
+public final class ServerConfig {
+    // Port the server (or the Router) listens on.
+    public static final int PORT = Integer.getInteger("memory.server.port", 12345);
+    // Set on each shard behind a Router; session tokens start with "<name>." so RESUME finds its shard.
+    public static final String SHARD_NAME = System.getProperty("memory.server.shardName", "");
+    // Router only: the shards as name=host:port,name=host:port.
+    public static final String ROUTER_SHARDS = System.getProperty("memory.router.shards", "");
+    // Points each shard owns on the Router's hash ring.
+    public static final int ROUTER_VIRTUAL_NODES = Integer.getInteger("memory.router.virtualNodes", 128);
+    // "blocking" (platform thread per client), "virtual" (virtual thread per client) or "nio".
+    public static final String MODE = System.getProperty("memory.server.mode", "blocking");
+    public static final boolean VIRTUAL_THREADS = MODE.equals("virtual");
+    public static final int EVENT_LOOPS = Integer.getInteger("memory.server.eventLoops",
+            Math.max(1, Runtime.getRuntime().availableProcessors()));
+    public static final long MISMATCH_DELAY_MS = Long.getLong("memory.server.mismatchDelayMs", 1000);
+    public static final int OUTBOUND_QUEUE_SIZE = Integer.getInteger("memory.server.outboundQueue", 256);
+    public static final SlowConsumerPolicy SLOW_CONSUMER_POLICY = SlowConsumerPolicy.valueOf(
+            System.getProperty("memory.server.slowConsumer", "disconnect").toUpperCase());
+    public static final long LOBBY_TICK_MS = Long.getLong("memory.server.lobbyTickMs", 250);
+    public static final int SEARCH_PAGE_SIZE = Integer.getInteger("memory.server.searchPageSize", 50);
+    // Rooms one SEARCH_ROOMS page may examine before it returns early with a cursor; 0 is unbounded.
+    public static final int SEARCH_SCAN_LIMIT = Integer.getInteger("memory.server.searchScanLimit", 10_000);
+    // Upper bounds for the board a room may ask for in CREATE.
+    public static final int MAX_BOARD_CARDS = Integer.getInteger("memory.server.maxBoardCards", 4096);
+    public static final int MAX_MATCH_SIZE = Integer.getInteger("memory.server.maxMatchSize", 4);
+    public static final int MAX_SPECTATORS = Integer.getInteger("memory.server.maxSpectators", 500);
+    // Threads shared by every room's SpectatorRelay.
+    public static final int SPECTATOR_THREADS = Integer.getInteger("memory.server.spectatorThreads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    // Room events kept per room for RESUME; a client further behind gets a snapshot instead.
+    public static final int REPLAY_BUFFER_SIZE = Integer.getInteger("memory.server.replayBuffer", 256);
+    // Journal directory; empty (the default) runs without a journal.
+    public static final String JOURNAL_DIR = System.getProperty("memory.server.journalDir", "");
+    public static final int JOURNAL_SEGMENT_BYTES = Integer.getInteger("memory.server.journalSegmentBytes", 16 << 20);
+    // How long the journal writer gathers records before each write and force().
+    public static final long JOURNAL_SYNC_MS = Long.getLong("memory.server.journalSyncMs", 5);
+    public static final long JOURNAL_CHECKPOINT_MS = Long.getLong("memory.server.journalCheckpointMs", 60_000);
+    // A game restored from the journal is deleted if no player has resumed by then.
+    public static final long RECOVERY_GRACE_MS = Long.getLong("memory.server.recoveryGraceMs", 120_000);
+    // How often the QUICK_MATCH queues are cut into rooms.
+    public static final long MATCH_TICK_MS = Long.getLong("memory.server.matchTickMs", 500);
+    public static final int MAX_LINE_LENGTH = Integer.getInteger("memory.server.maxLineLength", 4096);
+    // Loopback port serving Metrics.report() as plain text; 0 (the default) turns it off.
+    public static final int STATS_PORT = Integer.getInteger("memory.server.statsPort", 0);
+    // Per-connection command budgets (see RateLimiter): commands per second and burst for
+    // CLICK, lobby reads, room changes and everything else. A rate of 0 turns a class off.
+    public static final int CLICK_RATE = Integer.getInteger("memory.server.clickRate", 20);
+    public static final int CLICK_BURST = Integer.getInteger("memory.server.clickBurst", 40);
+    public static final int LOBBY_RATE = Integer.getInteger("memory.server.lobbyRate", 10);
+    public static final int LOBBY_BURST = Integer.getInteger("memory.server.lobbyBurst", 30);
+    public static final int ROOM_RATE = Integer.getInteger("memory.server.roomRate", 5);
+    public static final int ROOM_BURST = Integer.getInteger("memory.server.roomBurst", 20);
+    public static final int OTHER_RATE = Integer.getInteger("memory.server.otherRate", 10);
+    public static final int OTHER_BURST = Integer.getInteger("memory.server.otherBurst", 20);
+    // Rejected commands a connection may rack up within about ten seconds before it is
+    // disconnected as a flood; 0 never disconnects.
+    public static final int FLOOD_LIMIT = Integer.getInteger("memory.server.floodLimit", 50);
+    // Admission limits (see Admission); 0 leaves a limit off, which is the default so the
+    // server scales as far as memory allows. Overload detection below still applies.
+    public static final int MAX_CONNECTIONS = Integer.getInteger("memory.server.maxConnections", 0);
+    public static final int MAX_ROOMS = Integer.getInteger("memory.server.maxRooms", 0);
+    // Rooms created by one connection that still exist.
+    public static final int MAX_ROOMS_PER_CONNECTION = Integer.getInteger("memory.server.maxRoomsPerConnection", 0);
+    // Connections the OS may queue before the accept loop takes them.
+    public static final int ACCEPT_BACKLOG = Integer.getInteger("memory.server.acceptBacklog", 128);
+    // Overload starts once the old generation is this full after a GC, or room timers run this late.
+    public static final int OVERLOAD_HEAP_PERCENT = Integer.getInteger("memory.server.overloadHeapPercent", 90);
+    public static final long OVERLOAD_LAG_MS = Long.getLong("memory.server.overloadLagMs", 250);
+    // How often the reaper looks for empty and abandoned rooms.
+    public static final long REAP_INTERVAL_MS = Long.getLong("memory.server.reapIntervalMs", 60_000);
+
+    private ServerConfig() {}
+}
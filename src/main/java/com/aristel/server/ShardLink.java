@@ -0,0 +1,134 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// The Router's view of one shard. A control connection stays subscribed to the shard's
+// LobbyFeed and passes every change on to the Router's merged lobby; if the shard goes away
+// its rooms are withdrawn and the link reconnects once a second until it is back.
+final class ShardLink implements Runnable {
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final long RETRY_MS = 1000;
+
+    final String name;
+    final String host;
+    final int port;
+    // Rooms this shard last reported; only touched by the control thread.
+    private final Set<String> rooms = new HashSet<>();
+    private long version = -1;
+
+    ShardLink(String name, String host, int port) {
+        this.name = name;
+        this.host = host;
+        this.port = port;
+    }
+
+    // Parses name=host:port.
+    static ShardLink parse(String spec) {
+        int eq = spec.indexOf('=');
+        int colon = spec.lastIndexOf(':');
+        if (eq <= 0 || colon < eq) throw new IllegalArgumentException("Bad shard '" + spec + "', expected name=host:port");
+        return new ShardLink(spec.substring(0, eq).trim(), spec.substring(eq + 1, colon).trim(),
+                Integer.parseInt(spec.substring(colon + 1).trim()));
+    }
+
+    Socket connect() throws IOException {
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+        return socket;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try (Socket socket = connect()) {
+                Log.info("Shard " + name + " connected (" + host + ":" + port + ")");
+                OutputStream out = socket.getOutputStream();
+                subscribe(out);
+                LineReader reader = new LineReader(socket.getInputStream(), 0);
+                byte[] line;
+                while ((line = reader.next()) != null) {
+                    handle(new String(line, StandardCharsets.UTF_8), out);
+                }
+            } catch (IOException e) {
+                // Fall through to withdraw the rooms and retry.
+            }
+
+            if (!rooms.isEmpty()) {
+                Log.warn("Shard " + name + " lost; withdrawing " + rooms.size() + " rooms");
+                List<String> changes = new ArrayList<>();
+                for (String roomId : rooms) changes.add("-" + roomId);
+                rooms.clear();
+                Router.applyChanges(changes);
+            }
+            version = -1;
+            try {
+                Thread.sleep(RETRY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void subscribe(OutputStream out) throws IOException {
+        out.write("SUBSCRIBE_LOBBY\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    // LOBBY_SNAPSHOT:<version>:<entry>;...  or  LOBBY_DELTA:<version>:+<entry>;-<roomId>;...
+    private void handle(String line, OutputStream out) throws IOException {
+        boolean snapshot = line.startsWith("LOBBY_SNAPSHOT:");
+        if (!snapshot && !line.startsWith("LOBBY_DELTA:")) return;
+
+        int start = line.indexOf(':') + 1;
+        int end = line.indexOf(':', start);
+        if (end < 0) return;
+        long v = Long.parseLong(line.substring(start, end));
+        String body = line.substring(end + 1);
+
+        List<String> changes = new ArrayList<>();
+        if (snapshot) {
+            // Diff against what this shard reported before, so the merged lobby only sees changes.
+            Set<String> gone = new HashSet<>(rooms);
+            rooms.clear();
+            for (String entry : body.split(";")) {
+                RoomListing listing = RoomListing.fromEntry(entry);
+                if (listing == null) continue;
+                rooms.add(listing.roomId);
+                gone.remove(listing.roomId);
+                changes.add("+" + entry);
+            }
+            for (String roomId : gone) changes.add("-" + roomId);
+        } else {
+            if (version >= 0 && v != version + 1) {
+                // Missed a delta; the shard answers a repeated subscribe with a fresh snapshot.
+                version = -1;
+                subscribe(out);
+                return;
+            }
+            for (String change : body.split(";")) {
+                if (change.isEmpty()) continue;
+                if (change.charAt(0) == '-') {
+                    rooms.remove(change.substring(1));
+                } else {
+                    RoomListing listing = RoomListing.fromEntry(change.substring(1));
+                    if (listing == null) continue;
+                    rooms.add(listing.roomId);
+                }
+                changes.add(change);
+            }
+        }
+        version = v;
+        if (!changes.isEmpty()) Router.applyChanges(changes);
+    }
+}
@@ -0,0 +1,57 @@
+package com.aristel.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+// Consistent hash ring over the Router's shards. Each shard owns virtualNodes points placed
+// by hashing "<name>#<n>", and a room belongs to the first point at or after the hash of its
+// id. Adding or removing a shard only moves the rooms next to that shard's points. Points are
+// packed as (hash << 32 | shard index) in one sorted long[], so a lookup is a binary search.
+final class ShardRing {
+    private final ShardLink[] shards;
+    private final long[] points;
+
+    ShardRing(List<ShardLink> shards, int virtualNodes) {
+        this.shards = shards.toArray(new ShardLink[0]);
+        this.points = new long[this.shards.length * virtualNodes];
+        int n = 0;
+        for (int i = 0; i < this.shards.length; i++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                long hash = hash(this.shards[i].name + "#" + v);
+                points[n++] = (hash << 32) | i;
+            }
+        }
+        Arrays.sort(points);
+    }
+
+    ShardLink owner(String roomId) {
+        long key = (long) hash(roomId) << 32;
+        int i = Arrays.binarySearch(points, key);
+        if (i < 0) i = -i - 1;
+        if (i == points.length) i = 0;
+        return shards[(int) points[i]];
+    }
+
+    ShardLink named(String name) {
+        for (ShardLink shard : shards) {
+            if (shard.name.equals(name)) return shard;
+        }
+        return null;
+    }
+
+    // FNV-1a over the UTF-8 bytes, then a murmur3 finalizer to spread short ids over the ring.
+    static int hash(String key) {
+        int h = 0x811c9dc5;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
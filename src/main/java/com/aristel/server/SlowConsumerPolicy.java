@@ -0,0 +1,8 @@
+package com.aristel.server;
+
+// What a connection does when its outbound queue is full.
+public enum SlowConsumerPolicy {
+    DROP,
+    COALESCE,
+    DISCONNECT
+}
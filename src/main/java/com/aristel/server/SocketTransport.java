@@ -0,0 +1,60 @@
+package com.aristel.server;
+
+import com.aristel.log.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+
+public final class SocketTransport implements Transport {
+    private Socket socket;
+    private OutputStream out;
+    private volatile Frame upgradeFrame;
+    private OutboundQueue queue = new OutboundQueue(ServerConfig.OUTBOUND_QUEUE_SIZE, ServerConfig.SLOW_CONSUMER_POLICY);
+
+    public SocketTransport(Socket socket) throws IOException {
+        this.socket = socket;
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        GameServer.startThread(this::writeLoop);
+    }
+
+    @Override
+    public void send(Frame frame) {
+        if (!queue.offer(frame)) {
+            Log.warn("Dropping slow client");
+            // The reader thread sees the closed socket and runs the normal disconnect.
+            close();
+        }
+    }
+
+    @Override
+    public void upgrade(Frame handshake) {
+        upgradeFrame = handshake;
+        send(handshake);
+    }
+
+    @Override
+    public void close() {
+        queue.close();
+        try {
+            socket.close();
+        } catch (IOException e) {}
+    }
+
+    private void writeLoop() {
+        try {
+            boolean binary = false;
+            Frame frame;
+            while ((frame = queue.take()) != null) {
+                byte[] bytes = frame.bytes(binary);
+                out.write(bytes);
+                Metrics.bytesSent(bytes.length);
+                if (frame == upgradeFrame) binary = true;
+                if (queue.isEmpty()) out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.aristel.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Read-only watchers of one room. GameRoom only appends to a lock-free queue while it holds
+// its lock; a relay thread then hands each shared Frame to every spectator's OutboundQueue,
+// so hundreds of watchers cost a player's turn one queue insert. Joins, leaves and direct
+// replies go through the same queue, which keeps every spectator's stream in room order.
+final class SpectatorRelay {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(ServerConfig.SPECTATOR_THREADS, task -> {
+        Thread thread = new Thread(task, "spectator-relay-" + threadCount.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Queue<Object> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicInteger count = new AtomicInteger();
+    // Only touched by the thread currently draining.
+    private ClientHandler[] watchers = new ClientHandler[8];
+    private int size = 0;
+
+    int count() {
+        return count.get();
+    }
+
+    void publish(Frame frame) {
+        if (count.get() == 0) return;
+        enqueue(frame);
+    }
+
+    // Returns false once the room already has ServerConfig.MAX_SPECTATORS watchers.
+    boolean add(ClientHandler handler, Frame... greeting) {
+        if (count.incrementAndGet() > ServerConfig.MAX_SPECTATORS) {
+            count.decrementAndGet();
+            return false;
+        }
+        enqueue(new Op(Op.ADD, handler, greeting));
+        return true;
+    }
+
+    void remove(ClientHandler handler) {
+        enqueue(new Op(Op.REMOVE, handler, null));
+    }
+
+    // Delivers frames to one spectator in order with everything already published.
+    void sendTo(ClientHandler handler, Frame... frames) {
+        enqueue(new Op(Op.DIRECT, handler, frames));
+    }
+
+    // Sends a last frame to every spectator and detaches them all.
+    void close(Frame farewell) {
+        enqueue(farewell);
+        enqueue(new Op(Op.CLEAR, null, null));
+    }
+
+    private void enqueue(Object op) {
+        pending.add(op);
+        if (scheduled.compareAndSet(false, true)) executor.execute(this::drain);
+    }
+
+    private void drain() {
+        Object op;
+        while ((op = pending.poll()) != null) {
+            if (op instanceof Frame) {
+                Frame frame = (Frame) op;
+                for (int i = 0; i < size; i++) watchers[i].send(frame);
+            } else {
+                apply((Op) op);
+            }
+        }
+        scheduled.set(false);
+        // Something may have been queued after the last poll but before the flag was cleared.
+        if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) executor.execute(this::drain);
+    }
+
+    private void apply(Op op) {
+        switch (op.kind) {
+            case Op.ADD:
+                if (size == watchers.length) {
+                    ClientHandler[] grown = new ClientHandler[size * 2];
+                    System.arraycopy(watchers, 0, grown, 0, size);
+                    watchers = grown;
+                }
+                watchers[size++] = op.handler;
+                for (Frame frame : op.frames) op.handler.send(frame);
+                break;
+            case Op.DIRECT:
+                if (indexOf(op.handler) >= 0) {
+                    for (Frame frame : op.frames) op.handler.send(frame);
+                }
+                break;
+            case Op.REMOVE: {
+                int i = indexOf(op.handler);
+                if (i < 0) break;
+                watchers[i] = watchers[--size];
+                watchers[size] = null;
+                count.decrementAndGet();
+                break;
+            }
+            case Op.CLEAR:
+                count.addAndGet(-size);
+                for (int i = 0; i < size; i++) watchers[i] = null;
+                size = 0;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int indexOf(ClientHandler handler) {
+        for (int i = 0; i < size; i++) {
+            if (watchers[i] == handler) return i;
+        }
+        return -1;
+    }
+
+    private static final class Op {
+        static final int ADD = 0;
+        static final int REMOVE = 1;
+        static final int DIRECT = 2;
+        static final int CLEAR = 3;
+
+        final int kind;
+        final ClientHandler handler;
+        final Frame[] frames;
+
+        Op(int kind, ClientHandler handler, Frame[] frames) {
+            this.kind = kind;
+            this.handler = handler;
+            this.frames = frames;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.aristel.server;
+
+public interface Transport {
+    void send(Frame frame);
+    // Queues the handshake reply as text; every frame queued after it is written in binary.
+    void upgrade(Frame handshake);
+    void close();
+}
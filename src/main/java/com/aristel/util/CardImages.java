@@ -0,0 +1,58 @@
+package com.aristel.util;
+
+import com.aristel.log.Log;
+import com.aristel.protocol.CardCatalogue;
+
+import javafx.scene.effect.ColorAdjust;
+import javafx.scene.image.Image;
+
+// Loads the tarot faces once per client; every other catalogue id is drawn from one of
+// these with a shared tint effect, so even a board of thousands of cards holds 21 images.
+public class CardImages {
+    private static CardImages instance;
+    private final Image back;
+    private final Image[] faces = new Image[CardCatalogue.FACES];
+    private final ColorAdjust[] tints = new ColorAdjust[CardCatalogue.TINTS];
+
+    private CardImages() {
+        back = load("back.png");
+        for (int i = 0; i < faces.length; i++) {
+            faces[i] = load(i + ".png");
+        }
+        // Hue steps spread evenly around ColorAdjust's [-1, 1] colour wheel.
+        for (int i = 1; i < tints.length; i++) {
+            double hue = 2.0 * i / tints.length;
+            if (hue > 1) hue -= 2;
+            tints[i] = new ColorAdjust(hue, 0.2, 0, 0);
+        }
+    }
+
+    public static CardImages getInstance() {
+        if (instance == null) {
+            instance = new CardImages();
+        }
+        return instance;
+    }
+
+    private Image load(String filename) {
+        try {
+            return new Image(getClass().getResourceAsStream("/com/aristel/assets/images/" + filename));
+        } catch (Exception e) {
+            Log.warn("Missing Image: " + filename);
+            return null;
+        }
+    }
+
+    public Image back() {
+        return back;
+    }
+
+    public Image face(int imageId) {
+        return faces[CardCatalogue.face(imageId)];
+    }
+
+    // Null for the untinted faces.
+    public ColorAdjust tint(int imageId) {
+        return tints[CardCatalogue.tint(imageId)];
+    }
+}
@@ -1,5 +1,7 @@
 package com.aristel.util;
 
+import com.aristel.log.Log;
+
 import javafx.scene.media.AudioClip;
 import java.net.URL;
 import java.util.HashMap;
@@ -39,10 +41,10 @@ public class SoundManager {
             if (resource != null) {
                 soundCache.put(key, new AudioClip(resource.toString()));
             } else {
-                System.err.println("Sound missing: " + filename);
+                Log.warn("Sound missing: " + filename);
             }
         } catch (Exception e) {
-            System.err.println("Error loading sound: " + filename);
+            Log.warn("Error loading sound: " + filename);
         }
     }
 